@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import oracle.iam.provisioning.vo.ApplicationInstance;
+
+/**
+ * Immutable index of application instances by name and by
+ * (resource object key, IT resource key). Indexed instances are shared and
+ * must not be modified.
+ */
+public final class ApplicationInstanceIndex {
+
+	private final ApplicationInstance[] instances;
+	private final long[] objectKeys, itResourceKeys;
+	private final int[] byKeys;
+	private final HashMap<String, ApplicationInstance> byName;
+	private final long loadedAt = System.currentTimeMillis();
+
+	public ApplicationInstanceIndex(Collection<ApplicationInstance> appInstances) {
+		int n = appInstances.size();
+		instances = appInstances.toArray(new ApplicationInstance[n]);
+		objectKeys = new long[n];
+		itResourceKeys = new long[n];
+		byKeys = new int[LookupTable.tableSize(n)];
+		byName = new HashMap<>(n * 2);
+		for (int row = 0; row < n; ++row) {
+			ApplicationInstance ai = instances[row];
+			objectKeys[row] = ai.getObjectKey();
+			itResourceKeys[row] = ai.getItResourceKey();
+			if (!byName.containsKey(ai.getApplicationInstanceName())) {
+				byName.put(ai.getApplicationInstanceName(), ai);
+			}
+			if (find(objectKeys[row], itResourceKeys[row]) < 0) {
+				int mask = byKeys.length - 1, slot = hash(objectKeys[row], itResourceKeys[row]) & mask;
+				while (byKeys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				byKeys[slot] = row + 1;
+			}
+		}
+	}
+
+	public ApplicationInstance get(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * @return first loaded instance with these keys, null if none
+	 */
+	public ApplicationInstance get(long objectKey, long itResourceKey) {
+		int row = find(objectKey, itResourceKey);
+		return row < 0 ? null : instances[row];
+	}
+
+	public List<ApplicationInstance> getAll() {
+		return Collections.unmodifiableList(Arrays.asList(instances));
+	}
+
+	public int size() {
+		return instances.length;
+	}
+
+	public long getLoadTime() {
+		return loadedAt;
+	}
+
+	private int find(long objectKey, long itResourceKey) {
+		int mask = byKeys.length - 1;
+		for (int slot = hash(objectKey, itResourceKey) & mask;; slot = (slot + 1) & mask) {
+			int row = byKeys[slot] - 1;
+			if (row < 0) {
+				return -1;
+			}
+			if (objectKeys[row] == objectKey && itResourceKeys[row] == itResourceKey) {
+				return row;
+			}
+		}
+	}
+
+	private static int hash(long objectKey, long itResourceKey) {
+		long h = (objectKey * 31 + itResourceKey) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import oracle.iam.provisioning.vo.Entitlement;
+
+/**
+ * Entitlements by code and by (application instance, code), where an
+ * application instance is identified by its resource object and IT resource
+ * keys. Both indexes are LRU bounded and entries expire after ttl.
+ */
+public final class EntitlementCache {
+
+	private final long ttlNanos;
+	private final Map<String, CachedEntitlement> byCode;
+	private final Map<Key, CachedEntitlement> byAppInstance;
+
+	public EntitlementCache(long ttl, TimeUnit unit, int maxEntries) {
+		this.ttlNanos = unit.toNanos(ttl);
+		this.byCode = Collections.synchronizedMap(new LruMap<String, CachedEntitlement>(maxEntries));
+		this.byAppInstance = Collections.synchronizedMap(new LruMap<Key, CachedEntitlement>(maxEntries));
+	}
+
+	public Entitlement get(String code) {
+		return valid(byCode, code);
+	}
+
+	public Entitlement get(long objectKey, long itResourceKey, String code) {
+		return valid(byAppInstance, new Key(objectKey, itResourceKey, code));
+	}
+
+	public void put(Entitlement entitlement) {
+		CachedEntitlement cached = new CachedEntitlement(entitlement);
+		byCode.put(entitlement.getEntitlementCode(), cached);
+		byAppInstance.put(new Key(entitlement), cached);
+	}
+
+	/**
+	 * Drops the code under every application instance.
+	 */
+	public void invalidate(String code) {
+		byCode.remove(code);
+		synchronized (byAppInstance) {
+			for (Iterator<Key> it = byAppInstance.keySet().iterator(); it.hasNext();) {
+				String c = it.next().code;
+				if (code == null ? c == null : code.equals(c)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	public void invalidate(long objectKey, long itResourceKey, String code) {
+		Key key = new Key(objectKey, itResourceKey, code);
+		byAppInstance.remove(key);
+		synchronized (byCode) {
+			CachedEntitlement cached = byCode.get(code);
+			if (cached != null && key.equals(new Key(cached.entitlement))) {
+				byCode.remove(code);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		byCode.clear();
+		byAppInstance.clear();
+	}
+
+	public int size() {
+		return byAppInstance.size();
+	}
+
+	private <K> Entitlement valid(Map<K, CachedEntitlement> index, K key) {
+		CachedEntitlement cached = index.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (ttlNanos > 0 && System.nanoTime() - cached.loadedAt > ttlNanos) {
+			index.remove(key);
+			return null;
+		}
+		return cached.entitlement;
+	}
+
+	private static final class CachedEntitlement {
+
+		private final Entitlement entitlement;
+		private final long loadedAt = System.nanoTime();
+
+		private CachedEntitlement(Entitlement entitlement) {
+			this.entitlement = entitlement;
+		}
+	}
+
+	private static final class Key {
+
+		private final long objectKey, itResourceKey;
+		private final String code;
+
+		private Key(Entitlement entitlement) {
+			this(entitlement.getObjectKey(), entitlement.getItResourceKey(), entitlement.getEntitlementCode());
+		}
+
+		private Key(long objectKey, long itResourceKey, String code) {
+			this.objectKey = objectKey;
+			this.itResourceKey = itResourceKey;
+			this.code = code;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 79 * hash + (int) (objectKey ^ (objectKey >>> 32));
+			hash = 79 * hash + (int) (itResourceKey ^ (itResourceKey >>> 32));
+			hash = 79 * hash + (code == null ? 0 : code.hashCode());
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return objectKey == other.objectKey && itResourceKey == other.itResourceKey
+				   && (code == null ? other.code == null : code.equals(other.code));
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Collections;
+import java.util.Map;
+import oracle.iam.provisioning.vo.Entitlement;
+
+/**
+ * Outcome of a bulk entitlement import, per entitlement code in input order.
+ */
+public final class EntitlementImportResult {
+
+	private final Map<String, Entitlement> created, existing;
+	private final Map<String, Exception> failures;
+
+	public EntitlementImportResult(Map<String, Entitlement> created, Map<String, Entitlement> existing,
+								   Map<String, Exception> failures) {
+		this.created = Collections.unmodifiableMap(created);
+		this.existing = Collections.unmodifiableMap(existing);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	public Map<String, Entitlement> getCreated() {
+		return created;
+	}
+
+	public Map<String, Entitlement> getExisting() {
+		return existing;
+	}
+
+	public Map<String, Exception> getFailures() {
+		return failures;
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "EntitlementImportResult{" + "created=" + created.size() + ", existing=" + existing.size() + ", failed="
+			   + failures.keySet() + '}';
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable metadata of a process or child form at its active version.
+ */
+public final class FormDescriptor {
+
+	private final String name, description;
+	private final long key;
+	private final int version;
+	private final List<Field> fields;
+	private final HashMap<String, Field> byName;
+	private volatile FormRenderer renderer;
+
+	public FormDescriptor(String name, long key, String description, int version, List<Field> fields) {
+		this.name = name;
+		this.key = key;
+		this.description = description;
+		this.version = version;
+		this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+		this.byName = new HashMap<>(fields.size() * 2);
+		for (Field f : fields) {
+			byName.put(f.getName(), f);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getKey() {
+		return key;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return active version the fields were read from, 0 if the form has no versions
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return fields in the order OIM returned them
+	 */
+	public List<Field> getFields() {
+		return fields;
+	}
+
+	public Field getField(String fieldName) {
+		return byName.get(fieldName);
+	}
+
+	public List<Field> getFieldsByType(String type) {
+		ArrayList<Field> res = new ArrayList<>();
+		for (Field f : fields) {
+			if (type.equalsIgnoreCase(f.getType())) {
+				res.add(f);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return render plan of this form, built on first use
+	 */
+	public FormRenderer getRenderer() {
+		FormRenderer r = renderer;
+		if (r == null) {
+			renderer = r = new FormRenderer(this);
+		}
+		return r;
+	}
+
+	@Override
+	public String toString() {
+		return "FormDescriptor{" + "name=" + name + ", key=" + key + ", version=" + version + ", fields="
+			   + fields.size() + '}';
+	}
+
+	public static final class Field {
+
+		private final String name, label, type, lookup;
+		private final long key, order;
+		private final boolean encrypted, visible;
+
+		public Field(String name, long key, String label, long order, String type, String lookup,
+					 boolean encrypted, boolean visible) {
+			this.name = name;
+			this.key = key;
+			this.label = label;
+			this.order = order;
+			this.type = type;
+			this.lookup = lookup;
+			this.encrypted = encrypted;
+			this.visible = visible;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getKey() {
+			return key;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public long getOrder() {
+			return order;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return lookup code of lookup fields, null otherwise
+		 */
+		public String getLookup() {
+			return lookup;
+		}
+
+		public boolean isEncrypted() {
+			return encrypted;
+		}
+
+		public boolean isVisible() {
+			return visible;
+		}
+
+		@Override
+		public String toString() {
+			return "Field{" + "name=" + name + ", label=" + label + ", type=" + type + '}';
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Render plan of one form version: system, encrypted and hidden fields are
+ * skipped, labelled fields are printed by label. The data map is only read.
+ */
+public final class FormRenderer {
+
+	private final FormDescriptor form;
+	private final HashSet<String> skipped = new HashSet<>();
+	private final HashMap<String, String> labels = new HashMap<>();
+
+	FormRenderer(FormDescriptor form) {
+		this.form = form;
+		for (String s : ResourceUtility.FORM_SYSTEM_FIELDS) {
+			skipped.add(form.getName() + s);
+		}
+		for (FormDescriptor.Field field : form.getFields()) {
+			if (field.isEncrypted() || !field.isVisible()) {
+				skipped.add(field.getName());
+			} else if (!Misc.isNullOrEmpty(field.getLabel())) {
+				labels.put(field.getName(), field.getLabel());
+			}
+		}
+	}
+
+	public FormDescriptor getForm() {
+		return form;
+	}
+
+	/**
+	 * Writes "label: value" lines in data iteration order.
+	 */
+	public void render(Map<String, ?> data, Appendable out) throws IOException {
+		render(data, null, out);
+	}
+
+	/**
+	 * Writes "prefix - label: value" lines, as used for child table records.
+	 */
+	public void render(Map<String, ?> data, String prefix, Appendable out) throws IOException {
+		for (Map.Entry<String, ?> e : data.entrySet()) {
+			String field = e.getKey();
+			if (skipped.contains(field)) {
+				continue;
+			}
+			String label = labels.get(field);
+			if (prefix != null) {
+				out.append(prefix).append(" - ");
+			}
+			out.append(label == null ? field : label)
+				.append(": ")
+				.append(String.valueOf(e.getValue()))
+				.append('\n');
+		}
+	}
+
+	/**
+	 * Same as replaceAll("(UD_[A-Z0-9]*).*", "$1") on a process form field name.
+	 */
+	public static String formNameOf(String fieldName) {
+		if (!fieldName.startsWith("UD_")) {
+			return fieldName;
+		}
+		int end = 3;
+		while (end < fieldName.length()) {
+			char c = fieldName.charAt(end);
+			if ((c < 'A' || c > 'Z') && (c < '0' || c > '9')) {
+				break;
+			}
+			++end;
+		}
+		return fieldName.substring(0, end);
+	}
+
+}
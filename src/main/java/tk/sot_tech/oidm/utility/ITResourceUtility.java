@@ -30,7 +30,11 @@ import Thor.API.Exceptions.tcColumnNotFoundException;
 import Thor.API.Exceptions.tcITResourceNotFoundException;
 import Thor.API.Operations.tcITResourceInstanceOperationsIntf;
 import Thor.API.tcResultSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class ITResourceUtility extends ServiceProvider<tcITResourceInstanceOperationsIntf> {
 	
@@ -40,6 +44,53 @@ public class ITResourceUtility extends ServiceProvider<tcITResourceInstanceOpera
 			IT_PARAM_NAME_IN_OIM = "IT Resources Type Parameter.Name",
 			IT_PARAM_VALUE_IN_OIM = "IT Resource.Parameter.Value";
 
+	private static volatile Caches cache;
+
+	/**
+	 * Caches IT resource name/key pairs and parameters. Parameter changes made
+	 * elsewhere (password rotation, ...) become visible after ttl or invalidateITResource().
+	 */
+	public static void enableCache(long ttl, TimeUnit unit, int maxResources) {
+		cache = new Caches(ttl, unit, maxResources);
+	}
+
+	public static void disableCache() {
+		cache = null;
+	}
+
+	public static void invalidateITResource(String name) {
+		Caches c = cache;
+		if (c != null) {
+			Long key = c.keys.getIfPresent(name);
+			c.keys.invalidate(name);
+			if (key != null) {
+				c.names.invalidate(key);
+				c.parameters.invalidate(key);
+			}
+		}
+	}
+
+	public static void invalidateITResource(long key) {
+		Caches c = cache;
+		if (c != null) {
+			String name = c.names.getIfPresent(key);
+			c.names.invalidate(key);
+			c.parameters.invalidate(key);
+			if (name != null) {
+				c.keys.invalidate(name);
+			}
+		}
+	}
+
+	public static void invalidateAll() {
+		Caches c = cache;
+		if (c != null) {
+			c.keys.invalidateAll();
+			c.names.invalidateAll();
+			c.parameters.invalidateAll();
+		}
+	}
+
 	public HashMap<String, String> getITResourceParameters(String itResourceName) throws tcAPIException,
 																						 tcITResourceNotFoundException,
 																						 tcColumnNotFoundException {
@@ -50,21 +101,135 @@ public class ITResourceUtility extends ServiceProvider<tcITResourceInstanceOpera
 	public HashMap<String, String> getITResourceParameters(long itResourceKey) throws tcAPIException,
 																					  tcITResourceNotFoundException,
 																					  tcColumnNotFoundException {
+		Caches c = cache;
+		if (c == null) {
+			return loadITResourceParameters(itResourceKey);
+		}
+		try {
+			return new HashMap<>(c.parameters.get(itResourceKey, new LoadingCache.Loader<Long, Map<String, String>>() {
+				@Override
+				public Map<String, String> load(Long key) throws Exception {
+					return Collections.unmodifiableMap(loadITResourceParameters(key));
+				}
+			}));
+		} catch (Exception ex) {
+			Misc.propagateIfInstanceOf(ex, tcAPIException.class);
+			Misc.propagateIfInstanceOf(ex, tcITResourceNotFoundException.class);
+			Misc.propagateIfInstanceOf(ex, tcColumnNotFoundException.class);
+			throw Misc.propagate(ex);
+		}
+	}
+
+	public long getITResourceKey(String name) throws tcAPIException, tcColumnNotFoundException {
+		final Caches c = cache;
+		if (c == null) {
+			return findITResourceKey(name);
+		}
+		try {
+			return c.keys.get(name, new LoadingCache.Loader<String, Long>() {
+				@Override
+				public Long load(String key) throws Exception {
+					long found = findITResourceKey(key);
+					c.names.put(found, key);
+					return found;
+				}
+			});
+		} catch (Exception ex) {
+			Misc.propagateIfInstanceOf(ex, tcAPIException.class);
+			Misc.propagateIfInstanceOf(ex, tcColumnNotFoundException.class);
+			throw Misc.propagate(ex);
+		}
+	}
+	
+	public String getITResourceName(long key) throws tcAPIException, tcColumnNotFoundException {
+		final Caches c = cache;
+		if (c == null) {
+			return findITResourceName(key);
+		}
+		try {
+			return c.names.get(key, new LoadingCache.Loader<Long, String>() {
+				@Override
+				public String load(Long itKey) throws Exception {
+					String found = findITResourceName(itKey);
+					c.keys.put(found, itKey);
+					return found;
+				}
+			});
+		} catch (Exception ex) {
+			Misc.propagateIfInstanceOf(ex, tcAPIException.class);
+			Misc.propagateIfInstanceOf(ex, tcColumnNotFoundException.class);
+			throw Misc.propagate(ex);
+		}
+	}
+
+	public BatchResult<String, Map<String, String>> getAllITResourceParameters(int parallelism) throws tcAPIException,
+																									   tcColumnNotFoundException,
+																									   InterruptedException {
+		return getAllITResourceParameters(new HashMap<String, Object>(), parallelism);
+	}
+
+	/**
+	 * Resolves matching IT resources in one query and loads their parameters
+	 * with up to parallelism concurrent workers on the ParallelBatch executor.
+	 *
+	 * @param filter      findITResourceInstances criteria, empty for all IT resources
+	 * @param parallelism maximum number of concurrent parameter loads
+	 *
+	 * @return IT resource name to unmodifiable parameters; failed resources are
+	 *         reported in failures instead of being thrown
+	 */
+	public BatchResult<String, Map<String, String>> getAllITResourceParameters(Map<String, Object> filter, int parallelism)
+		throws tcAPIException, tcColumnNotFoundException, InterruptedException {
+		final LinkedHashMap<String, Long> keys = new LinkedHashMap<>();
+		ResultSetCursor its = new ResultSetCursor(getService().findITResourceInstances(filter));
+		int name = its.column(IT_NAME_IN_OIM), key = its.column(IT_KEY_IN_OIM);
+		while (its.next()) {
+			keys.put(its.getString(name), its.getLong(key));
+		}
+		final Caches c = cache;
+		return ParallelBatch.run(keys.keySet(), parallelism, new ParallelBatch.WorkerFactory<String, Map<String, String>>() {
+			@Override
+			public ParallelBatch.Worker<String, Map<String, String>> newWorker() {
+				final ITResourceUtility itu = new ITResourceUtility();
+				return new ParallelBatch.Worker<String, Map<String, String>>() {
+					@Override
+					public Map<String, String> process(String itName) throws Exception {
+						long itKey = keys.get(itName);
+						Map<String, String> params = Collections.unmodifiableMap(itu.loadITResourceParameters(itKey));
+						if (c != null) {
+							c.keys.put(itName, itKey);
+							c.names.put(itKey, itName);
+							c.parameters.put(itKey, params);
+						}
+						return params;
+					}
+
+					@Override
+					public void close() {
+						itu.close();
+					}
+				};
+			}
+		});
+	}
+
+	protected HashMap<String, String> loadITResourceParameters(long itResourceKey) throws tcAPIException,
+																						  tcITResourceNotFoundException,
+																						  tcColumnNotFoundException {
 
 		HashMap<String, String> params = new HashMap<>();
-		tcResultSet its = service.getITResourceInstanceParameters(itResourceKey);
-		for (int i = 0; i < its.getRowCount(); ++i) {
-			its.goToRow(i);
-			params.put(its.getStringValue(IT_PARAM_NAME_IN_OIM),
-					   its.getStringValue(IT_PARAM_VALUE_IN_OIM));
+		ResultSetCursor its = new ResultSetCursor(getService().getITResourceInstanceParameters(itResourceKey));
+		int name = its.column(IT_PARAM_NAME_IN_OIM), value = its.column(IT_PARAM_VALUE_IN_OIM);
+		while (its.next()) {
+			params.put(its.getString(name), its.getString(value));
 		}
 		return params;
 	}
 
-	public long getITResourceKey(String name) throws tcAPIException, tcColumnNotFoundException {
+	protected long findITResourceKey(String name) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> hm = new HashMap<>();
 		hm.put(IT_NAME_IN_OIM, name);
-		tcResultSet its = service.findITResourceInstances(hm);
+		tcResultSet its = getService().findITResourceInstances(hm);
 		if (its == null || its.isEmpty()) {
 			throw new IllegalArgumentException("IT Resource " + name + " not exist");
 		}
@@ -75,10 +240,10 @@ public class ITResourceUtility extends ServiceProvider<tcITResourceInstanceOpera
 		return its.getLongValue(IT_KEY_IN_OIM);
 	}
 	
-	public String getITResourceName(long key) throws tcAPIException, tcColumnNotFoundException {
+	protected String findITResourceName(long key) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> hm = new HashMap<>();
 		hm.put(IT_KEY_IN_OIM, key);
-		tcResultSet its = service.findITResourceInstances(hm);
+		tcResultSet its = getService().findITResourceInstances(hm);
 		if (Misc.isNullOrEmpty(its)) {
 			throw new IllegalArgumentException("IT Resource with key " + key + " not exist");
 		}
@@ -91,4 +256,17 @@ public class ITResourceUtility extends ServiceProvider<tcITResourceInstanceOpera
 		return tcITResourceInstanceOperationsIntf.class;
 	}
 
+	private static final class Caches {
+
+		private final LoadingCache<String, Long> keys;
+		private final LoadingCache<Long, String> names;
+		private final LoadingCache<Long, Map<String, String>> parameters;
+
+		private Caches(long ttl, TimeUnit unit, int maxResources) {
+			keys = new LoadingCache<>(ttl, unit, maxResources);
+			names = new LoadingCache<>(ttl, unit, maxResources);
+			parameters = new LoadingCache<>(ttl, unit, maxResources);
+		}
+	}
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import Thor.API.Base.tcUtilityOperationsIntf;
+
+/**
+ * Service handle resolved on first use.
+ * close() releases the handle only if it was actually acquired.
+ */
+public class LazyService<T> implements AutoCloseable {
+	
+	private final Class<? extends T> serviceClass;
+	private volatile T service;
+
+	public LazyService(Class<? extends T> serviceClass) {
+		this.serviceClass = serviceClass;
+	}
+	
+	public T get(){
+		T s = service;
+		if(s == null){
+			synchronized(this){
+				s = service;
+				if(s == null){
+					s = service = create();
+				}
+			}
+		}
+		return s;
+	}
+	
+	public boolean isAcquired(){
+		return service != null;
+	}
+	
+	protected T create(){
+		return Platform.getService(serviceClass);
+	}
+
+	@Override
+	public void close() {
+		T s;
+		synchronized(this){
+			s = service;
+			service = null;
+		}
+		if(s instanceof tcUtilityOperationsIntf){
+			((tcUtilityOperationsIntf)s).close();
+		}
+	}
+	
+}
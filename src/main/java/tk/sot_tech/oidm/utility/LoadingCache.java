@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent cache with TTL, entry count and weight limits.
+ * Concurrent misses of one key share a single load; a failed load is not cached.
+ * Eviction removes least recently used entries by scanning, so it suits caches
+ * of hundreds of entries, not millions.
+ */
+public class LoadingCache<K, V> {
+
+	public interface Loader<K, V> {
+
+		V load(K key) throws Exception;
+	}
+
+	public interface Weigher<V> {
+
+		long weigh(V value);
+	}
+
+	private final long ttlNanos;
+	private final int maxEntries;
+	private final long maxWeight;
+	private final Weigher<? super V> weigher;
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final AtomicLong weight = new AtomicLong(), hits = new AtomicLong(), misses = new AtomicLong(),
+		evictions = new AtomicLong();
+
+	/**
+	 * @param ttl        time to live after load, 0 or less to keep entries until evicted
+	 * @param unit       ttl unit
+	 * @param maxEntries maximum number of entries, 0 or less for unbounded
+	 */
+	public LoadingCache(long ttl, TimeUnit unit, int maxEntries) {
+		this(ttl, unit, maxEntries, 0, null);
+	}
+
+	/**
+	 * @param maxWeight maximum sum of weights, 0 or less (or null weigher) for unbounded
+	 */
+	public LoadingCache(long ttl, TimeUnit unit, int maxEntries, long maxWeight, Weigher<? super V> weigher) {
+		this.ttlNanos = ttl > 0 ? unit.toNanos(ttl) : 0;
+		this.maxEntries = maxEntries > 0 ? maxEntries : Integer.MAX_VALUE;
+		this.maxWeight = maxWeight > 0 && weigher != null ? maxWeight : Long.MAX_VALUE;
+		this.weigher = weigher;
+	}
+
+	public V get(final K key, final Loader<? super K, ? extends V> loader) throws Exception {
+		Entry<V> e = entries.get(key);
+		if (e != null) {
+			if (!e.isExpired(System.nanoTime())) {
+				hits.incrementAndGet();
+				return e.await();
+			}
+			remove(key, e);
+		}
+		final Entry<V> created = new Entry<>();
+		created.future = new FutureTask<>(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				return loader.load(key);
+			}
+		});
+		e = entries.putIfAbsent(key, created);
+		if (e != null) {
+			hits.incrementAndGet();
+			return e.await();
+		}
+		misses.incrementAndGet();
+		created.future.run();
+		try {
+			V value = created.await();
+			loaded(key, created, value);
+			return value;
+		} catch (Exception | Error ex) {
+			remove(key, created);
+			throw ex;
+		}
+	}
+
+	public V getIfPresent(K key) {
+		Entry<V> e = entries.get(key);
+		if (e == null || !e.future.isDone() || e.isExpired(System.nanoTime())) {
+			return null;
+		}
+		try {
+			hits.incrementAndGet();
+			return e.await();
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	public void put(K key, V value) {
+		Entry<V> created = new Entry<>();
+		created.future = new FutureTask<>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, value);
+		created.future.run();
+		Entry<V> old = entries.put(key, created);
+		if (old != null) {
+			weight.addAndGet(-old.weight.getAndSet(0));
+		}
+		loaded(key, created, value);
+	}
+
+	public void invalidate(K key) {
+		Entry<V> e = entries.get(key);
+		if (e != null) {
+			remove(key, e);
+		}
+	}
+
+	public void invalidateAll() {
+		for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+			remove(e.getKey(), e.getValue());
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getWeight() {
+		return weight.get();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	private void loaded(K key, Entry<V> e, V value) {
+		e.loadedAt = e.lastAccess = System.nanoTime();
+		e.done = true;
+		if (weigher != null && value != null) {
+			long w = weigher.weigh(value);
+			e.weight.set(w);
+			weight.addAndGet(w);
+			if (entries.get(key) != e) {
+				weight.addAndGet(-e.weight.getAndSet(0));
+			}
+		}
+		evictIfNeeded();
+	}
+
+	private boolean remove(K key, Entry<V> e) {
+		if (entries.remove(key, e)) {
+			weight.addAndGet(-e.weight.getAndSet(0));
+			return true;
+		}
+		return false;
+	}
+
+	private void evictIfNeeded() {
+		while (entries.size() > maxEntries || weight.get() > maxWeight) {
+			K eldestKey = null;
+			Entry<V> eldest = null;
+			for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+				Entry<V> candidate = e.getValue();
+				if (candidate.done && (eldest == null || candidate.lastAccess - eldest.lastAccess < 0)) {
+					eldestKey = e.getKey();
+					eldest = candidate;
+				}
+			}
+			if (eldest == null) {
+				return;
+			}
+			if (remove(eldestKey, eldest)) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private final class Entry<T> {
+
+		private FutureTask<T> future;
+		private final AtomicLong weight = new AtomicLong();
+		private volatile boolean done;
+		private volatile long loadedAt, lastAccess;
+
+		private boolean isExpired(long now) {
+			return done && ttlNanos > 0 && now - loadedAt > ttlNanos;
+		}
+
+		private T await() throws Exception {
+			try {
+				T value = future.get();
+				lastAccess = System.nanoTime();
+				return value;
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (Exception) cause;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+public final class LookupSyncResult {
+
+	private final String lookup;
+	private final int added, updated, removed, unchanged;
+
+	public LookupSyncResult(String lookup, int added, int updated, int removed, int unchanged) {
+		this.lookup = lookup;
+		this.added = added;
+		this.updated = updated;
+		this.removed = removed;
+		this.unchanged = unchanged;
+	}
+
+	public String getLookup() {
+		return lookup;
+	}
+
+	public int getAdded() {
+		return added;
+	}
+
+	public int getUpdated() {
+		return updated;
+	}
+
+	public int getRemoved() {
+		return removed;
+	}
+
+	public int getUnchanged() {
+		return unchanged;
+	}
+
+	public boolean isChanged() {
+		return added + updated + removed > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "LookupSyncResult{" + "lookup=" + lookup + ", added=" + added + ", updated=" + updated + ", removed="
+			   + removed + ", unchanged=" + unchanged + '}';
+	}
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Immutable compact lookup content.
+ * Rows are stored sorted by key in primitive arrays, codes and decodes are
+ * indexes into a pool of distinct strings, and codes are hashed into an
+ * open-addressing int table. Access by key is O(log n), by code O(1).
+ * Decode and (code, decode) indexes are built on first use, once per table.
+ * Iteration (scan, toMap, ...) keeps the order returned by OIM.
+ */
+public final class LookupTable {
+
+	private final String name;
+	private final long[] keys;
+	private final int[] codes, decodes, order, codeIndex;
+	private final String[] pool;
+	private volatile int[] decodeIndex, pairIndex;
+
+	public LookupTable(String name, long[] keys, String[] codes, String[] decodes) {
+		int n = keys.length;
+		if (n != codes.length || n != decodes.length) {
+			throw new IllegalArgumentException("Lookup " + name + " columns differ in length");
+		}
+		this.name = name;
+		this.order = sortedByKey(keys);
+		this.keys = new long[n];
+		this.codes = new int[n];
+		this.decodes = new int[n];
+		HashMap<String, Integer> distinct = new HashMap<>();
+		ArrayList<String> strings = new ArrayList<>();
+		int[] rowOf = new int[n];
+		for (int row = 0; row < n; ++row) {
+			int source = order[row];
+			rowOf[source] = row;
+			this.keys[row] = keys[source];
+			this.codes[row] = intern(codes[source], distinct, strings);
+			this.decodes[row] = intern(decodes[source], distinct, strings);
+		}
+		for (int i = 0; i < n; ++i) {
+			order[i] = rowOf[i];
+		}
+		this.pool = strings.toArray(new String[strings.size()]);
+		this.codeIndex = new int[tableSize(n)];
+		for (int row : order) {
+			putRow(codeIndex, this.codes, row);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param row row index in key order, 0 to size() - 1
+	 */
+	public long getKey(int row) {
+		return keys[row];
+	}
+
+	public String getCode(int row) {
+		return pool[codes[row]];
+	}
+
+	public String getDecode(int row) {
+		return pool[decodes[row]];
+	}
+
+	/**
+	 * @return row of the value with given key or -1
+	 */
+	public int findByKey(long key) {
+		int row = Arrays.binarySearch(keys, key);
+		return row < 0 ? -1 : row;
+	}
+
+	/**
+	 * @return row of the value with given code (the last one if code is not unique) or -1
+	 */
+	public int findByCode(String code) {
+		return findRow(codeIndex, codes, code);
+	}
+
+	public String getDecode(String code) {
+		int row = findByCode(code);
+		return row < 0 ? null : getDecode(row);
+	}
+
+	/**
+	 * @return row of the value with given decode (the last one if decode is not unique) or -1
+	 */
+	public int findByDecode(String decode) {
+		int[] index = decodeIndex;
+		if (index == null) {
+			index = new int[codeIndex.length];
+			for (int row : order) {
+				putRow(index, decodes, row);
+			}
+			decodeIndex = index;
+		}
+		return findRow(index, decodes, decode);
+	}
+
+	public String getCode(String decode) {
+		int row = findByDecode(decode);
+		return row < 0 ? null : getCode(row);
+	}
+
+	/**
+	 * @return row of the value with given code and decode or -1
+	 */
+	public int findByCodeAndDecode(String code, String decode) {
+		int[] index = pairIndex;
+		if (index == null) {
+			index = new int[codeIndex.length];
+			for (int i = order.length - 1; i >= 0; --i) {
+				putPair(index, order[i]);
+			}
+			pairIndex = index;
+		}
+		int mask = index.length - 1;
+		for (int slot = hash(code, decode) & mask;; slot = (slot + 1) & mask) {
+			int row = index[slot] - 1;
+			if (row < 0) {
+				return -1;
+			}
+			String c = pool[codes[row]], d = pool[decodes[row]];
+			if ((c == null ? code == null : c.equals(code)) && (d == null ? decode == null : d.equals(decode))) {
+				return row;
+			}
+		}
+	}
+
+	/**
+	 * @return key of the value with given code and decode or -1
+	 */
+	public long getKey(String code, String decode) {
+		int row = findByCodeAndDecode(code, decode);
+		return row < 0 ? -1 : keys[row];
+	}
+
+	/**
+	 * @return number of visited rows
+	 */
+	public int scan(LookupVisitor visitor) {
+		for (int i = 0; i < order.length; ++i) {
+			int row = order[i];
+			if (!visitor.visit(keys[row], pool[codes[row]], pool[decodes[row]])) {
+				return i + 1;
+			}
+		}
+		return order.length;
+	}
+
+	public HashMap<String, String> toMap() {
+		HashMap<String, String> map = new LinkedHashMap<>();
+		for (int row : order) {
+			map.put(pool[codes[row]], pool[decodes[row]]);
+		}
+		return map;
+	}
+
+	public HashMap<Long, Pair<String, String>> toMapWithKeys() {
+		HashMap<Long, Pair<String, String>> map = new LinkedHashMap<>();
+		for (int row : order) {
+			map.put(keys[row], new Pair<>(pool[codes[row]], pool[decodes[row]]));
+		}
+		return map;
+	}
+
+	public ArrayList<Pair<String, String>> toPairs() {
+		ArrayList<Pair<String, String>> list = new ArrayList<>(order.length);
+		for (int row : order) {
+			list.add(new Pair<>(pool[codes[row]], pool[decodes[row]]));
+		}
+		return list;
+	}
+
+	/**
+	 * Rough heap size of this table without the pooled strings themselves.
+	 */
+	public long estimateSize() {
+		int[] d = decodeIndex, p = pairIndex;
+		return 8L * keys.length + 4L * (codes.length + decodes.length + order.length + codeIndex.length)
+			   + 4L * pool.length + (d == null ? 0 : 4L * d.length) + (p == null ? 0 : 4L * p.length);
+	}
+
+	private static int intern(String s, HashMap<String, Integer> distinct, ArrayList<String> strings) {
+		Integer index = distinct.get(s);
+		if (index == null) {
+			index = strings.size();
+			distinct.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	static int tableSize(int entries) {
+		int size = 2;
+		while (size < entries * 2) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	static int hash(String s) {
+		int h = s == null ? 0 : s.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Open-addressing table of row + 1 (0 is empty), later rows replace equal earlier ones.
+	 */
+	private void putRow(int[] table, int[] column, int row) {
+		String value = pool[column[row]];
+		int mask = table.length - 1;
+		for (int slot = hash(value) & mask;; slot = (slot + 1) & mask) {
+			int existing = table[slot] - 1;
+			if (existing < 0 || column[existing] == column[row]) {
+				table[slot] = row + 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the first row in load order for equal pairs, as a linear search would.
+	 */
+	private void putPair(int[] table, int row) {
+		int mask = table.length - 1;
+		for (int slot = hash(pool[codes[row]], pool[decodes[row]]) & mask;; slot = (slot + 1) & mask) {
+			int existing = table[slot] - 1;
+			if (existing < 0 || codes[existing] == codes[row] && decodes[existing] == decodes[row]) {
+				table[slot] = row + 1;
+				return;
+			}
+		}
+	}
+
+	private static int hash(String code, String decode) {
+		return hash(code) * 31 + hash(decode);
+	}
+
+	private int findRow(int[] table, int[] column, String value) {
+		int mask = table.length - 1;
+		for (int slot = hash(value) & mask;; slot = (slot + 1) & mask) {
+			int row = table[slot] - 1;
+			if (row < 0) {
+				return -1;
+			}
+			String candidate = pool[column[row]];
+			if (candidate == null ? value == null : candidate.equals(value)) {
+				return row;
+			}
+		}
+	}
+
+	/**
+	 * @return source indexes ordered by key, stable for equal keys
+	 */
+	private static int[] sortedByKey(long[] keys) {
+		int n = keys.length;
+		int[] result = new int[n], buffer = new int[n];
+		boolean sorted = true;
+		for (int i = 0; i < n; ++i) {
+			result[i] = i;
+			sorted &= i == 0 || keys[i - 1] <= keys[i];
+		}
+		if (sorted) {
+			return result;
+		}
+		for (int width = 1; width < n; width <<= 1) {
+			for (int lo = 0; lo < n; lo += width << 1) {
+				int mid = Math.min(lo + width, n), hi = Math.min(lo + (width << 1), n), l = lo, r = mid;
+				for (int k = lo; k < hi; ++k) {
+					buffer[k] = r >= hi || l < mid && keys[result[l]] <= keys[result[r]] ? result[l++] : result[r++];
+				}
+			}
+			int[] t = result;
+			result = buffer;
+			buffer = t;
+		}
+		return result;
+	}
+
+}
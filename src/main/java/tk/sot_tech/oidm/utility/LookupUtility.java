@@ -28,11 +28,15 @@ package tk.sot_tech.oidm.utility;
 import Thor.API.Exceptions.tcAPIException;
 import Thor.API.Exceptions.tcColumnNotFoundException;
 import Thor.API.Exceptions.tcInvalidLookupException;
+import Thor.API.Exceptions.tcInvalidValueException;
 import Thor.API.Operations.tcLookupOperationsIntf;
-import Thor.API.tcResultSet;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class LookupUtility extends ServiceProvider<tcLookupOperationsIntf> {
 
@@ -40,49 +44,190 @@ public class LookupUtility extends ServiceProvider<tcLookupOperationsIntf> {
 		LK_DECODE_IN_OIM = "Lookup Definition.Lookup Code Information.Decode",
 		LK_KEY_IN_OIM = "Lookup Definition.Lookup Code Information.Key";
 
-	public HashMap<String, String> getLookup(String name) throws tcAPIException, tcInvalidLookupException, tcColumnNotFoundException {
-		HashMap<String, String> cache = new LinkedHashMap<>();
-		tcResultSet result = service.getLookupValues(name);
-		for (int i = 0; i < result.getRowCount(); ++i) {
-			result.goToRow(i);
-			cache.put(result.getStringValue(LK_CODE_IN_OIM),
-					  result.getStringValue(LK_DECODE_IN_OIM));
+	private static final LoadingCache.Weigher<LookupTable> ROWS = new LoadingCache.Weigher<LookupTable>() {
+		@Override
+		public long weigh(LookupTable value) {
+			return value.size();
 		}
+	};
+
+	private static volatile LoadingCache<String, LookupTable> cache;
+
+	/**
+	 * Serves lookup reads from a shared cache. Values changed outside of this
+	 * class become visible after ttl or invalidateLookup().
+	 *
+	 * @param ttl        time to live of a loaded lookup
+	 * @param unit       ttl unit
+	 * @param maxLookups maximum number of cached lookups
+	 * @param maxRows    maximum number of rows in all cached lookups
+	 */
+	public static void enableCache(long ttl, TimeUnit unit, int maxLookups, long maxRows) {
+		cache = new LoadingCache<>(ttl, unit, maxLookups, maxRows, ROWS);
+	}
+
+	public static void disableCache() {
+		cache = null;
+	}
+
+	public static LoadingCache<String, LookupTable> getCache() {
 		return cache;
 	}
 
+	public static void invalidateLookup(String name) {
+		LoadingCache<String, LookupTable> c = cache;
+		if (c != null) {
+			c.invalidate(name);
+		}
+	}
+
+	public LookupTable getLookupTable(String name) throws tcAPIException, tcInvalidLookupException, tcColumnNotFoundException {
+		LoadingCache<String, LookupTable> c = cache;
+		if (c == null) {
+			return loadLookupTable(name);
+		}
+		try {
+			return c.get(name, new LoadingCache.Loader<String, LookupTable>() {
+				@Override
+				public LookupTable load(String key) throws Exception {
+					return loadLookupTable(key);
+				}
+			});
+		} catch (Exception ex) {
+			Misc.propagateIfInstanceOf(ex, tcAPIException.class);
+			Misc.propagateIfInstanceOf(ex, tcInvalidLookupException.class);
+			Misc.propagateIfInstanceOf(ex, tcColumnNotFoundException.class);
+			throw Misc.propagate(ex);
+		}
+	}
+
+	protected LookupTable loadLookupTable(String name) throws tcAPIException, tcInvalidLookupException, tcColumnNotFoundException {
+		ResultSetCursor result = new ResultSetCursor(getService().getLookupValues(name));
+		int count = result.getRowCount(), key = result.column(LK_KEY_IN_OIM), code = result.column(LK_CODE_IN_OIM),
+			decode = result.column(LK_DECODE_IN_OIM);
+		long[] keys = new long[count];
+		String[] codes = new String[count], decodes = new String[count];
+		for (int i = 0; result.next(); ++i) {
+			keys[i] = result.getLong(key);
+			codes[i] = result.getString(code);
+			decodes[i] = result.getString(decode);
+		}
+		return new LookupTable(name, keys, codes, decodes);
+	}
+
+	/**
+	 * Walks lookup rows without building maps. Reads the cached table when the
+	 * cache is enabled, the result set otherwise.
+	 *
+	 * @return number of visited rows
+	 */
+	public int scanLookup(String name, LookupVisitor visitor) throws tcAPIException, tcInvalidLookupException,
+																	 tcColumnNotFoundException {
+		if (cache != null) {
+			return getLookupTable(name).scan(visitor);
+		}
+		ResultSetCursor result = new ResultSetCursor(getService().getLookupValues(name));
+		int key = result.column(LK_KEY_IN_OIM), code = result.column(LK_CODE_IN_OIM), decode = result.column(LK_DECODE_IN_OIM);
+		while (result.next()) {
+			if (!visitor.visit(result.getLong(key), result.getString(code), result.getString(decode))) {
+				return result.getRow() + 1;
+			}
+		}
+		return result.getRowCount();
+	}
+
+	public HashMap<String, String> getLookup(String name) throws tcAPIException, tcInvalidLookupException, tcColumnNotFoundException {
+		if (cache != null) {
+			return getLookupTable(name).toMap();
+		}
+		HashMap<String, String> map = new LinkedHashMap<>();
+		ResultSetCursor result = new ResultSetCursor(getService().getLookupValues(name));
+		int code = result.column(LK_CODE_IN_OIM), decode = result.column(LK_DECODE_IN_OIM);
+		while (result.next()) {
+			map.put(result.getString(code), result.getString(decode));
+		}
+		return map;
+	}
+
 	public HashMap<Long, Pair<String, String>> getLookupWithKeys(String name) throws tcAPIException, tcInvalidLookupException,
 																					 tcColumnNotFoundException {
-		HashMap<Long, Pair<String, String>> cache = new LinkedHashMap<>();
-		tcResultSet result = service.getLookupValues(name);
-		for (int i = 0; i < result.getRowCount(); ++i) {
-			result.goToRow(i);
-			cache.put(result.getLongValue(LK_KEY_IN_OIM),
-					  new Pair<>(result.getStringValue(LK_CODE_IN_OIM),
-								 result.getStringValue(LK_DECODE_IN_OIM)));
+		if (cache != null) {
+			return getLookupTable(name).toMapWithKeys();
 		}
-		return cache;
+		HashMap<Long, Pair<String, String>> map = new LinkedHashMap<>();
+		ResultSetCursor result = new ResultSetCursor(getService().getLookupValues(name));
+		int key = result.column(LK_KEY_IN_OIM), code = result.column(LK_CODE_IN_OIM), decode = result.column(LK_DECODE_IN_OIM);
+		while (result.next()) {
+			map.put(result.getLong(key), new Pair<>(result.getString(code), result.getString(decode)));
+		}
+		return map;
 	}
 
 	public ArrayList<Pair<String, String>> getLookupNotUnique(String name) throws tcColumnNotFoundException, tcAPIException, tcInvalidLookupException {
-		ArrayList<Pair<String, String>> cache = new ArrayList<>();
-		tcResultSet result = service.getLookupValues(name);
-		for (int i = 0; i < result.getRowCount(); ++i) {
-			result.goToRow(i);
-			cache.add(new Pair<>(result.getStringValue(LK_CODE_IN_OIM),
-								 result.getStringValue(LK_DECODE_IN_OIM)));
+		if (cache != null) {
+			return getLookupTable(name).toPairs();
 		}
-		return cache;
+		ResultSetCursor result = new ResultSetCursor(getService().getLookupValues(name));
+		ArrayList<Pair<String, String>> list = new ArrayList<>(result.getRowCount());
+		int code = result.column(LK_CODE_IN_OIM), decode = result.column(LK_DECODE_IN_OIM);
+		while (result.next()) {
+			list.add(new Pair<>(result.getString(code), result.getString(decode)));
+		}
+		return list;
 	}
 
 	public HashMap<String, String> clearLookup(String name) throws tcAPIException, tcInvalidLookupException, tcColumnNotFoundException {
-		HashMap<String, String> lookup = getLookup(name);
-		if (!lookup.isEmpty()) {
-			service.removeBulkLookupValues(name, lookup.keySet());
+		HashMap<String, String> lookup = loadLookupTable(name).toMap();
+		try {
+			if (!lookup.isEmpty()) {
+				getService().removeBulkLookupValues(name, lookup.keySet());
+			}
+		} finally {
+			invalidateLookup(name);
 		}
 		return lookup;
 	}
 
+	/**
+	 * Brings lookup values to the desired state reading the lookup once and
+	 * writing only the difference. New and changed values are written before
+	 * obsolete ones are removed, so the lookup is never empty in between.
+	 *
+	 * @param name    lookup name
+	 * @param desired code to decode map
+	 *
+	 * @return numbers of added, updated, removed and unchanged values
+	 */
+	public LookupSyncResult syncLookup(String name, Map<String, String> desired) throws tcAPIException,
+																						 tcInvalidLookupException,
+																						 tcInvalidValueException,
+																						 tcColumnNotFoundException {
+		HashMap<String, String> current = loadLookupTable(name).toMap();
+		int added = 0, updated = 0, unchanged = 0;
+		HashSet<String> obsolete = new HashSet<>(current.keySet());
+		obsolete.removeAll(desired.keySet());
+		try {
+			for (Map.Entry<String, String> e : desired.entrySet()) {
+				String code = e.getKey(), decode = Misc.nullToEmpty(e.getValue());
+				if (!current.containsKey(code)) {
+					getService().addLookupValue(name, code, decode, "", "");
+					++added;
+				} else if (!Objects.equals(decode, Misc.nullToEmpty(current.get(code)))) {
+					getService().updateLookupValue(name, code, code, decode, "", "");
+					++updated;
+				} else {
+					++unchanged;
+				}
+			}
+			if (!obsolete.isEmpty()) {
+				getService().removeBulkLookupValues(name, obsolete);
+			}
+		} finally {
+			invalidateLookup(name);
+		}
+		return new LookupSyncResult(name, added, updated, obsolete.size(), unchanged);
+	}
+
 	@Override
 	protected Class<tcLookupOperationsIntf> getServiceClass() {
 		return tcLookupOperationsIntf.class;
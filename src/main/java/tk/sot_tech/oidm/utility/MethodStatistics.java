@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable snapshot of one service method's counters.
+ * Histogram bucket 0 counts calls under 1 microsecond, bucket i counts calls
+ * in [2^(i-1), 2^i) microseconds, the last bucket is open-ended.
+ */
+public final class MethodStatistics {
+
+	private final String service, method;
+	private final long calls, errors, totalMicros, maxMicros;
+	private final long[] histogram;
+
+	@ConstructorProperties({"service", "method", "calls", "errors", "totalMicros", "maxMicros", "histogram"})
+	public MethodStatistics(String service, String method, long calls, long errors, long totalMicros, long maxMicros,
+							long[] histogram) {
+		this.service = service;
+		this.method = method;
+		this.calls = calls;
+		this.errors = errors;
+		this.totalMicros = totalMicros;
+		this.maxMicros = maxMicros;
+		this.histogram = histogram.clone();
+	}
+
+	public String getService() {
+		return service;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalMicros() {
+		return totalMicros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	public long getAverageMicros() {
+		return calls == 0 ? 0 : totalMicros / calls;
+	}
+
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+
+	public long getP50Micros() {
+		return percentile(0.5);
+	}
+
+	public long getP95Micros() {
+		return percentile(0.95);
+	}
+
+	public long getP99Micros() {
+		return percentile(0.99);
+	}
+
+	/**
+	 * @return upper bound of the histogram bucket holding the given fraction of calls,
+	 *         capped by the observed maximum
+	 */
+	public long percentile(double fraction) {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * fraction), seen = 0;
+		for (int i = 0; i < histogram.length; ++i) {
+			seen += histogram[i];
+			if (seen >= rank) {
+				return Math.min(1L << i, maxMicros);
+			}
+		}
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return service + '.' + method + "{calls=" + calls + ", errors=" + errors + ", avg=" + getAverageMicros()
+			   + "us, p95=" + getP95Micros() + "us, max=" + maxMicros + "us}";
+	}
+
+}
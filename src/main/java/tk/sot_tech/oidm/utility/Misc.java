@@ -145,4 +145,20 @@ public final class Misc {
 		return field.toUpperCase().replaceAll(".*_UDF_", "");
 	}
 
+	public static <X extends Throwable> void propagateIfInstanceOf(Throwable t, Class<X> type) throws X {
+		if (type.isInstance(t)) {
+			throw type.cast(t);
+		}
+	}
+
+	public static RuntimeException propagate(Throwable t) {
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		throw new IllegalStateException(t);
+	}
+
 }
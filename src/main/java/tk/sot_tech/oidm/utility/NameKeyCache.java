@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Map;
+
+/**
+ * Bidirectional name/key map for entities whose name and key never change
+ * (forms, resource objects). Reads are lock-free with primitive long keys.
+ * New pairs are appended in place, the index is rebuilt only when it grows
+ * or a pair is replaced or removed.
+ */
+public final class NameKeyCache {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private volatile Index index = new Index(INITIAL_CAPACITY);
+
+	/**
+	 * @return key of name, -1 if not cached
+	 */
+	public long getKey(String name) {
+		return index.key(name);
+	}
+
+	/**
+	 * @return name of key, null if not cached
+	 */
+	public String getName(long key) {
+		return index.name(key);
+	}
+
+	public int size() {
+		return index.size;
+	}
+
+	/**
+	 * Replaces any pair with the same name or the same key.
+	 */
+	public synchronized void put(String name, long key) {
+		if (name == null) {
+			throw new IllegalArgumentException("Name must not be null");
+		}
+		Index current = index;
+		long cachedKey = current.key(name);
+		String cachedName = current.name(key);
+		if (cachedKey == key && name.equals(cachedName)) {
+			return;
+		}
+		if (cachedKey != -1 || cachedName != null) {
+			Index rebuilt = current.copy(current.size + 1, name, key);
+			rebuilt.append(name, key);
+			index = rebuilt;
+		} else if (current.size == current.keys.length) {
+			Index grown = current.copy(current.keys.length * 2, null, -1);
+			grown.append(name, key);
+			index = grown;
+		} else {
+			current.append(name, key);
+		}
+	}
+
+	/**
+	 * Later pairs replace cached ones with the same name or key.
+	 */
+	public synchronized void putAll(Map<String, Long> pairs) {
+		Index current = index;
+		int n = pairs.size();
+		long[] keys = new long[n];
+		String[] names = new String[n];
+		int i = 0;
+		for (Map.Entry<String, Long> e : pairs.entrySet()) {
+			if (e.getKey() == null) {
+				throw new IllegalArgumentException("Name must not be null");
+			}
+			keys[i] = e.getValue();
+			names[i++] = e.getKey();
+		}
+		Index rebuilt = new Index(Math.max(INITIAL_CAPACITY, current.size + n)), replaced = new Index(n);
+		for (i = n - 1; i >= 0; --i) {
+			if (rebuilt.name(keys[i]) == null) {
+				rebuilt.append(names[i], keys[i]);
+			}
+			replaced.append(names[i], keys[i]);
+		}
+		for (i = 0; i < current.size; ++i) {
+			if (replaced.key(current.names[i]) == -1 && replaced.name(current.keys[i]) == null) {
+				rebuilt.append(current.names[i], current.keys[i]);
+			}
+		}
+		index = rebuilt;
+	}
+
+	public synchronized void invalidate(String name) {
+		Index current = index;
+		long key = current.key(name);
+		if (key != -1) {
+			index = current.copy(current.keys.length, name, key);
+		}
+	}
+
+	public synchronized void invalidate(long key) {
+		Index current = index;
+		String name = current.name(key);
+		if (name != null) {
+			index = current.copy(current.keys.length, name, key);
+		}
+	}
+
+	public synchronized void clear() {
+		index = new Index(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Rows and hash tables sized for a fixed capacity. Only the owning cache
+	 * appends, under its lock; a row becomes visible to readers when size is
+	 * published, later slots pointing past size are skipped.
+	 */
+	private static final class Index {
+
+		private final long[] keys;
+		private final String[] names;
+		private final int[] byKey, byName;
+		private volatile int size;
+
+		private Index(int capacity) {
+			keys = new long[capacity];
+			names = new String[capacity];
+			byKey = new int[LookupTable.tableSize(capacity)];
+			byName = new int[byKey.length];
+		}
+
+		/**
+		 * @return index of capacity holding all rows but those with dropName or dropKey
+		 */
+		private Index copy(int capacity, String dropName, long dropKey) {
+			Index copy = new Index(Math.max(capacity, size));
+			for (int i = 0; i < size; ++i) {
+				if (keys[i] != dropKey && !names[i].equals(dropName)) {
+					copy.append(names[i], keys[i]);
+				}
+			}
+			return copy;
+		}
+
+		private void append(String name, long key) {
+			int row = size;
+			keys[row] = key;
+			names[row] = name;
+			insert(byKey, hash(key), row);
+			insert(byName, LookupTable.hash(name), row);
+			size = row + 1;
+		}
+
+		private long key(String name) {
+			if (name == null) {
+				return -1;
+			}
+			int row = find(byName, LookupTable.hash(name), 0, name);
+			return row < 0 ? -1 : keys[row];
+		}
+
+		private String name(long key) {
+			int row = find(byKey, hash(key), key, null);
+			return row < 0 ? null : names[row];
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		private int find(int[] table, int hash, long key, String name) {
+			int mask = table.length - 1, visible = size;
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+				int row = table[slot] - 1;
+				if (row < 0) {
+					return -1;
+				}
+				if (row < visible && (name == null ? keys[row] == key : name.equals(names[row]))) {
+					return row;
+				}
+			}
+		}
+
+		private static void insert(int[] table, int hash, int row) {
+			int mask = table.length - 1;
+			int slot = hash & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = row + 1;
+		}
+	}
+
+}
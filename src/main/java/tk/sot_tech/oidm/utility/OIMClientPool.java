@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import Thor.API.Base.tcUtilityOperationsIntf;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.security.auth.login.LoginException;
+import oracle.iam.conf.api.SystemConfigurationService;
+import oracle.iam.platform.OIMClient;
+import static tk.sot_tech.oidm.utility.Misc.ownStack;
+
+/**
+ * Set of authenticated OIM client sessions, possibly against several cluster nodes.
+ * Services returned by getService() pick a session per call, so one handle
+ * spreads its calls over the whole pool. A call rejected because its session is
+ * no longer authenticated re-logins that session and is retried once; other
+ * failures, including transport errors, are never retried. A replaced login is
+ * logged out only after the calls still running on it have completed.
+ */
+public class OIMClientPool implements AutoCloseable {
+
+	public enum Selection {
+		ROUND_ROBIN, LEAST_IN_FLIGHT
+	}
+
+	/**
+	 * Part of OIMClient the pool relies on, so the pool can run on any
+	 * implementation, e.g. an in-process stand-in.
+	 */
+	public interface Client {
+
+		<T> T getService(Class<T> serviceClass);
+
+		void logout();
+	}
+
+	public interface SessionFactory {
+
+		Client login(String providerUrl) throws LoginException;
+	}
+
+	public static final String WEBLOGIC_CONTEXT_FACTORY = "weblogic.jndi.WLInitialContextFactory",
+		HEALTH_CHECK_PROPERTY = "XL.ForcePasswordChangeAtFirstLogin";
+
+	private static final Logger LOG = Logger.getLogger(OIMClientPool.class.getName());
+
+	private final SessionFactory factory;
+	private final Selection selection;
+	private final Session[] sessions;
+	private final AtomicInteger next = new AtomicInteger();
+	private ScheduledExecutorService healthCheck;
+
+	public OIMClientPool(SessionFactory factory, List<String> providerUrls, int sessionsPerNode,
+						 Selection selection) throws LoginException {
+		if (Misc.isNullOrEmpty(providerUrls) || sessionsPerNode < 1) {
+			throw new IllegalArgumentException("At least one node and one session per node required");
+		}
+		this.factory = factory;
+		this.selection = selection;
+		ArrayList<Session> list = new ArrayList<>();
+		LoginException lastError = null;
+		for (int i = 0; i < sessionsPerNode; ++i) {
+			for (String url : providerUrls) {
+				Session s = new Session(url);
+				try {
+					s.login();
+				} catch (LoginException ex) {
+					LOG.log(Level.WARNING, "Unable to login to {0}: {1}", new Object[]{url, ex});
+					lastError = ex;
+				}
+				list.add(s);
+			}
+		}
+		sessions = list.toArray(new Session[list.size()]);
+		if (getHealthyCount() == 0) {
+			throw lastError;
+		}
+	}
+
+	public static SessionFactory credentials(final String user, final char[] password) {
+		return credentials(WEBLOGIC_CONTEXT_FACTORY, user, password);
+	}
+
+	public static SessionFactory credentials(final String contextFactory, final String user, final char[] password) {
+		return new SessionFactory() {
+			@Override
+			public Client login(String providerUrl) throws LoginException {
+				Hashtable<String, String> env = new Hashtable<>();
+				env.put(OIMClient.JAVA_NAMING_FACTORY_INITIAL, contextFactory);
+				env.put(OIMClient.JAVA_NAMING_PROVIDER_URL, providerUrl);
+				OIMClient client = new OIMClient(env);
+				client.login(user, password.clone());
+				return wrap(client);
+			}
+		};
+	}
+
+	public static Client wrap(final OIMClient client) {
+		return new Client() {
+			@Override
+			public <T> T getService(Class<T> serviceClass) {
+				return client.getService(serviceClass);
+			}
+
+			@Override
+			public void logout() {
+				client.logout();
+			}
+		};
+	}
+
+	public <T> T getService(final Class<T> serviceClass) {
+		return serviceClass.cast(Proxy.newProxyInstance(serviceClass.getClassLoader(), new Class<?>[]{serviceClass},
+														new PooledInvocation(serviceClass)));
+	}
+
+	public int size() {
+		return sessions.length;
+	}
+
+	public int getHealthyCount() {
+		int count = 0;
+		for (Session s : sessions) {
+			if (s.healthy) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	public int getInFlight() {
+		int count = 0;
+		for (Session s : sessions) {
+			count += s.inFlight.get();
+		}
+		return count;
+	}
+
+	/**
+	 * Probes every session and re-logins the ones that fail.
+	 */
+	public void checkHealth() {
+		for (Session s : sessions) {
+			Connection c = s.current;
+			if (c == null || !c.acquire()) {
+				s.relogin(c);
+				continue;
+			}
+			try {
+				probe(c.client);
+				s.healthy = true;
+			} catch (Exception ex) {
+				LOG.log(Level.WARNING, "Session to {0} failed health check: {1}", new Object[]{s.url, ex});
+				s.relogin(c);
+			} finally {
+				c.release();
+			}
+		}
+	}
+
+	public synchronized void startHealthCheck(long period, TimeUnit unit) {
+		if (healthCheck != null) {
+			healthCheck.shutdownNow();
+		}
+		healthCheck = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "OIMClientPool health check");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		healthCheck.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				checkHealth();
+			}
+		}, period, period, unit);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (healthCheck != null) {
+			healthCheck.shutdownNow();
+			healthCheck = null;
+		}
+		for (Session s : sessions) {
+			s.logout();
+		}
+	}
+
+	protected void probe(Client client) throws Exception {
+		client.getService(SystemConfigurationService.class).getSystemProperty(HEALTH_CHECK_PROPERTY);
+	}
+
+	/**
+	 * Only authentication failures count: the server has refused the call, so
+	 * it is safe to repeat it on a fresh login.
+	 */
+	protected boolean isSessionExpired(Throwable error) {
+		for (Throwable t = error; t != null; t = t.getCause()) {
+			String name = t.getClass().getName();
+			if (t instanceof LoginException
+				|| "javax.ejb.EJBAccessException".equals(name) || "javax.ejb.NoSuchEJBException".equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Session select() {
+		int n = sessions.length, start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+		Session selected = null;
+		for (int i = 0; i < n; ++i) {
+			Session s = sessions[(start + i) % n];
+			if (!s.healthy) {
+				continue;
+			}
+			if (selection == Selection.ROUND_ROBIN) {
+				return s;
+			}
+			if (selected == null || s.inFlight.get() < selected.inFlight.get()) {
+				selected = s;
+			}
+		}
+		return selected == null ? sessions[start] : selected;
+	}
+
+	private final class Session {
+
+		private final String url;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile Connection current;
+		private volatile boolean healthy;
+
+		private Session(String url) {
+			this.url = url;
+		}
+
+		private synchronized void login() throws LoginException {
+			replace(new Connection(factory.login(url)));
+			healthy = true;
+		}
+
+		/**
+		 * Re-logins unless another thread has already replaced the failed connection.
+		 */
+		private synchronized void relogin(Connection failed) {
+			if (current != failed && current != null) {
+				return;
+			}
+			try {
+				login();
+				LOG.log(Level.INFO, "Session to {0} restored", url);
+			} catch (LoginException ex) {
+				LOG.log(Level.SEVERE, "Unable to re-login to {0}: {1}", new Object[]{url, ex});
+				logout();
+			}
+		}
+
+		private synchronized void logout() {
+			healthy = false;
+			replace(null);
+		}
+
+		private void replace(Connection c) {
+			Connection old = current;
+			current = c;
+			if (old != null) {
+				old.retire();
+			}
+		}
+
+		private Connection acquire() {
+			for (;;) {
+				Connection c = current;
+				if (c == null) {
+					relogin(null);
+					c = current;
+					if (c == null) {
+						throw new IllegalStateException("No live OIM session to " + url);
+					}
+				}
+				if (c.acquire()) {
+					return c;
+				}
+			}
+		}
+	}
+
+	/**
+	 * One login of a session with its service handles. Once retired it is
+	 * closed by whichever call leaves it last.
+	 */
+	private static final class Connection {
+
+		private final Client client;
+		private final ConcurrentHashMap<Class<?>, Object> services = new ConcurrentHashMap<>();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicBoolean closed = new AtomicBoolean();
+		private volatile boolean retired;
+
+		private Connection(Client client) {
+			this.client = client;
+		}
+
+		private boolean acquire() {
+			inFlight.incrementAndGet();
+			if (retired) {
+				release();
+				return false;
+			}
+			return true;
+		}
+
+		private void release() {
+			if (inFlight.decrementAndGet() == 0 && retired) {
+				close();
+			}
+		}
+
+		private void retire() {
+			retired = true;
+			if (inFlight.get() == 0) {
+				close();
+			}
+		}
+
+		private void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			for (Object service : services.values()) {
+				if (service instanceof tcUtilityOperationsIntf) {
+					((tcUtilityOperationsIntf) service).close();
+				}
+			}
+			services.clear();
+			try {
+				client.logout();
+			} catch (Exception ex) {
+				LOG.fine(ownStack(ex));
+			}
+		}
+
+		private Object getService(Class<?> serviceClass) {
+			Object service = services.get(serviceClass);
+			if (service == null) {
+				service = client.getService(serviceClass);
+				Object existing = services.putIfAbsent(serviceClass, service);
+				if (existing != null) {
+					service = existing;
+				}
+			}
+			return service;
+		}
+	}
+
+	private final class PooledInvocation implements InvocationHandler {
+
+		private final Class<?> serviceClass;
+
+		private PooledInvocation(Class<?> serviceClass) {
+			this.serviceClass = serviceClass;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return "Pooled " + serviceClass.getName();
+				}
+			}
+			if (method.getDeclaringClass() == tcUtilityOperationsIntf.class && "close".equals(method.getName())) {
+				// pooled handles are shared and released with their session
+				return null;
+			}
+			for (int attempt = 0;; ++attempt) {
+				Session s = select();
+				Connection c = s.acquire();
+				s.inFlight.incrementAndGet();
+				try {
+					return method.invoke(c.getService(serviceClass), args);
+				} catch (InvocationTargetException ex) {
+					Throwable cause = ex.getCause();
+					if (attempt > 0 || !isSessionExpired(cause)) {
+						throw cause;
+					}
+					LOG.log(Level.WARNING, "Session to {0} expired: {1}", new Object[]{s.url, cause});
+					s.relogin(c);
+				} finally {
+					s.inFlight.decrementAndGet();
+					c.release();
+				}
+			}
+		}
+	}
+
+}
@@ -48,10 +48,10 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 		ORG_STATUS_ACTIVE_VALUE_IN_OIM = "Active",
 		ORG_PARENT_KEY_IN_OIM = "Organizations.Parent Key";
 
-	private final OrganizationManager newService = Platform.getService(OrganizationManager.class);
+	private final LazyService<OrganizationManager> newService = new LazyService<>(OrganizationManager.class);
 
 	public OrganizationManager getNewService() {
-		return newService;
+		return newService.get();
 	}
 
 	public void moveOrg(long id, long parentId, boolean checkExistence) throws tcAPIException,
@@ -62,14 +62,14 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 		if (checkExistence) {
 			HashMap<String, Object> hm = new HashMap<>();
 			hm.put(ORG_KEY_IN_OIM, id);
-			tcResultSet parent = service.findOrganizationsFiltered(hm, new String[]{
+			tcResultSet parent = getService().findOrganizationsFiltered(hm, new String[]{
 				ORG_PARENT_KEY_IN_OIM});
 			parent.goToRow(0);
 			if (parent.getLongValue(ORG_PARENT_KEY_IN_OIM) != parentId) {
-				service.moveOrganizations(new long[]{id}, parentId);
+				getService().moveOrganizations(new long[]{id}, parentId);
 			}
 		} else {
-			service.moveOrganizations(new long[]{id}, parentId);
+			getService().moveOrganizations(new long[]{id}, parentId);
 		}
 	}
 
@@ -95,7 +95,7 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 			tcResultSet user = usr.getService().findUsersFiltered(hm, new String[]{ORG_KEY_IN_OIM});
 			user.goToRow(0);
 			if (user.getLongValue(ORG_KEY_IN_OIM) != orgId) {
-				service.moveUsers(new long[]{id}, orgId);
+				getService().moveUsers(new long[]{id}, orgId);
 			}
 		} catch (Exception ex) {
 			Logger.getLogger(OrganizationUtility.class.getName()).log(Level.SEVERE, null, ex);
@@ -105,7 +105,7 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 	public String getOrgName(long key) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, String> hm = new HashMap<>();
 		hm.put(ORG_KEY_IN_OIM, String.valueOf(key));
-		tcResultSet org = service.findOrganizations(hm);
+		tcResultSet org = getService().findOrganizations(hm);
 		if (isNullOrEmpty(org)) {
 			return "";
 		}
@@ -117,7 +117,7 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 																		tcColumnNotFoundException {
 		HashMap<String, Object> hashMap = new HashMap<>(1);
 		hashMap.put(ORG_KEY_IN_OIM, orgKey);
-		tcResultSet rs = service.findOrganizationsFiltered(hashMap, new String[]{fieldName});
+		tcResultSet rs = getService().findOrganizationsFiltered(hashMap, new String[]{fieldName});
 		if (isNullOrEmpty(rs)) {
 			return null;
 		}
@@ -144,7 +144,7 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 
 	protected void getOrgChildren(String orgId, ArrayList<String> orgs) throws OrganizationManagerException {
 		HashSet<String> hs = new HashSet<>();
-		List<Organization> children = newService.getChildOrganizations(orgId, hs, new HashMap());
+		List<Organization> children = getNewService().getChildOrganizations(orgId, hs, new HashMap());
 		if (children != null) {
 			for (Organization org : children) {
 				String childId = org.getEntityId();
@@ -161,4 +161,10 @@ public class OrganizationUtility extends ServiceProvider<tcOrganizationOperation
 		return tcOrganizationOperationsIntf.class;
 	}
 
+	@Override
+	public void close() {
+		super.close();
+		newService.close();
+	}
+
 }
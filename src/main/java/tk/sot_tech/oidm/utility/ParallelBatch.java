@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes items with a bounded number of workers. Each worker owns its
+ * own state (usually a utility with its own service handles) and drains a
+ * shared queue; a failing item is recorded and does not stop the batch.
+ * The calling thread is one of the workers, the others run on an executor.
+ * <p>
+ * Executor threads do not carry the caller's OIM identity. The shared pool
+ * suits remote clients, whose identity belongs to the OIMClient session;
+ * inside the OIM server pass, or setExecutor(), an executor whose threads
+ * run as the intended user, such as a container managed executor.
+ */
+public final class ParallelBatch {
+
+	public interface Worker<I, R> extends AutoCloseable {
+
+		R process(I item) throws Exception;
+
+		@Override
+		void close();
+	}
+
+	public interface WorkerFactory<I, R> {
+
+		Worker<I, R> newWorker() throws Exception;
+	}
+
+	public static final int SHARED_POOL_SIZE = 32;
+
+	private static final AtomicInteger THREADS = new AtomicInteger();
+	private static final ExecutorService SHARED_POOL = newSharedPool();
+
+	private static volatile ExecutorService executor;
+
+	private ParallelBatch() {
+	}
+
+	/**
+	 * Sets the executor used by batches that do not pass their own, null
+	 * restores the shared pool of SHARED_POOL_SIZE daemon threads.
+	 */
+	public static void setExecutor(ExecutorService executor) {
+		ParallelBatch.executor = executor;
+	}
+
+	public static ExecutorService getExecutor() {
+		ExecutorService e = executor;
+		return e == null ? SHARED_POOL : e;
+	}
+
+	/**
+	 * @param items       distinct items to process
+	 * @param parallelism maximum number of workers, 1 processes items in the calling thread
+	 */
+	public static <I, R> BatchResult<I, R> run(Collection<? extends I> items, int parallelism,
+											   WorkerFactory<I, R> factory) throws InterruptedException {
+		return run(items, parallelism, null, getExecutor(), factory);
+	}
+
+	/**
+	 * @param limiter one permit is taken before each item, null for no limit
+	 */
+	public static <I, R> BatchResult<I, R> run(Collection<? extends I> items, int parallelism, RateLimiter limiter,
+											   WorkerFactory<I, R> factory) throws InterruptedException {
+		return run(items, parallelism, limiter, getExecutor(), factory);
+	}
+
+	/**
+	 * @param executor runs all workers but the calling thread; it is not shut down
+	 */
+	public static <I, R> BatchResult<I, R> run(Collection<? extends I> items, int parallelism,
+											   final RateLimiter limiter, ExecutorService executor,
+											   final WorkerFactory<I, R> factory) throws InterruptedException {
+		final ConcurrentLinkedQueue<I> queue = new ConcurrentLinkedQueue<>(items);
+		final Map<I, R> results = Collections.synchronizedMap(new HashMap<I, R>());
+		final Map<I, Exception> failures = Collections.synchronizedMap(new HashMap<I, Exception>());
+		int workers = Math.max(1, Math.min(parallelism, items.size()));
+		final Exception[] creationError = new Exception[1];
+		Runnable drain = new Runnable() {
+			@Override
+			public void run() {
+				try (Worker<I, R> worker = factory.newWorker()) {
+					I item;
+					while ((item = queue.poll()) != null) {
+						try {
+							if (limiter != null) {
+								limiter.acquire();
+							}
+							results.put(item, worker.process(item));
+						} catch (InterruptedException ex) {
+							failures.put(item, ex);
+							Thread.currentThread().interrupt();
+							return;
+						} catch (Exception ex) {
+							failures.put(item, ex);
+						}
+					}
+				} catch (Exception ex) {
+					synchronized (creationError) {
+						creationError[0] = ex;
+					}
+				}
+			}
+		};
+		List<Task> tasks = new ArrayList<>(workers - 1);
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		for (int i = 1; i < workers; ++i) {
+			Task task = new Task(drain, loader);
+			try {
+				executor.execute(task);
+				tasks.add(task);
+			} catch (RejectedExecutionException ex) {
+				// saturated executor: the remaining workers' items are left to the started ones
+				break;
+			}
+		}
+		try {
+			drain.run();
+			for (Task task : tasks) {
+				// a task not started yet has nothing left to do
+				if (!task.claim()) {
+					task.done.await();
+				}
+			}
+		} finally {
+			if (Thread.currentThread().isInterrupted()) {
+				queue.clear();
+			}
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		LinkedHashMap<I, R> orderedResults = new LinkedHashMap<>();
+		LinkedHashMap<I, Exception> orderedFailures = new LinkedHashMap<>();
+		for (I item : items) {
+			if (results.containsKey(item)) {
+				orderedResults.put(item, results.get(item));
+			} else if (failures.containsKey(item)) {
+				orderedFailures.put(item, failures.get(item));
+			} else {
+				orderedFailures.put(item, creationError[0] != null ? creationError[0]
+										  : new IllegalStateException("Item was not processed"));
+			}
+		}
+		return new BatchResult<>(orderedResults, orderedFailures);
+	}
+
+	private static ExecutorService newSharedPool() {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(SHARED_POOL_SIZE, SHARED_POOL_SIZE, 60, TimeUnit.SECONDS,
+														 new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ParallelBatch-" + THREADS.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Worker submitted to the executor. Whoever claims it first, the pool
+	 * thread or the caller that has already drained the queue, decides
+	 * whether it runs.
+	 */
+	private static final class Task implements Runnable {
+
+		private final Runnable drain;
+		private final ClassLoader loader;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private Task(Runnable drain, ClassLoader loader) {
+			this.drain = drain;
+			this.loader = loader;
+		}
+
+		private boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		@Override
+		public void run() {
+			if (!claim()) {
+				return;
+			}
+			Thread thread = Thread.currentThread();
+			ClassLoader previous = thread.getContextClassLoader();
+			thread.setContextClassLoader(loader);
+			try {
+				drain.run();
+			} finally {
+				thread.setContextClassLoader(previous);
+				done.countDown();
+			}
+		}
+	}
+
+}
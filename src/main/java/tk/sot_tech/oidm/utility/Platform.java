@@ -25,18 +25,85 @@
  */
 package tk.sot_tech.oidm.utility;
 
+import Thor.API.Base.tcUtilityOperationsIntf;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import oracle.iam.platform.OIMClient;
 
 public final class Platform {
 	
-	private static OIMClient client;
+	private static volatile ServiceCache cache = new ServiceCache(null, null);
+	private static final AtomicLong HITS = new AtomicLong(), MISSES = new AtomicLong();
 	
 	public static void switchRemote(OIMClient client){
-		Platform.client = client;
+		cache = new ServiceCache(client, null);
+	}
+	
+	public static void switchRemotePool(OIMClientPool pool){
+		cache = new ServiceCache(null, pool);
 	}
 	
 	public static final <T> T getService(Class<T> platformClass){
-		return client == null?oracle.iam.platform.Platform.getService(platformClass):client.getService(platformClass);
+		return cache.getService(platformClass);
+	}
+	
+	public static void clearServiceCache(){
+		cache.handles.clear();
+	}
+	
+	public static long getServiceCacheHits(){
+		return HITS.get();
+	}
+	
+	public static long getServiceCacheMisses(){
+		return MISSES.get();
+	}
+	
+	/**
+	 * Handles of one client or pool (or of the local platform when both are null).
+	 * Legacy tc*Intf handles are closed by their owners, so they are never shared.
+	 */
+	private static final class ServiceCache {
+		
+		private final OIMClient client;
+		private final OIMClientPool pool;
+		private final ConcurrentHashMap<Class<?>, Object> handles = new ConcurrentHashMap<>();
+
+		private ServiceCache(OIMClient client, OIMClientPool pool) {
+			this.client = client;
+			this.pool = pool;
+		}
+		
+		private <T> T lookup(Class<T> platformClass){
+			T service;
+			if(pool != null){
+				service = pool.getService(platformClass);
+			}
+			else{
+				service = client == null?oracle.iam.platform.Platform.getService(platformClass):client.getService(platformClass);
+			}
+			return ServiceStatistics.isEnabled()?ServiceStatistics.instrument(platformClass, service):service;
+		}
+		
+		private <T> T getService(Class<T> platformClass){
+			if(tcUtilityOperationsIntf.class.isAssignableFrom(platformClass)){
+				return lookup(platformClass);
+			}
+			Object handle = handles.get(platformClass);
+			if(handle != null){
+				HITS.incrementAndGet();
+				return platformClass.cast(handle);
+			}
+			MISSES.incrementAndGet();
+			T service = lookup(platformClass);
+			if(service != null){
+				handle = handles.putIfAbsent(platformClass, service);
+				if(handle != null){
+					return platformClass.cast(handle);
+				}
+			}
+			return service;
+		}
 	}
 	
 }
@@ -83,13 +83,13 @@ public class PolicyUtility extends ServiceProvider<tcAccessPolicyOperationsIntf>
 		formData.put(itResourceField, String.valueOf(itKey));
 		AccessPolicyResourceData[] data = {new AccessPolicyResourceData(objectKey, objectName, parentFormKey, formName, "P")};
 		data[0].setFormData(formData);
-		return service.createAccessPolicy(attr, provObjKeys, revokeObjIsNotApply, denyObjKeys, groupKeys, data);
+		return getService().createAccessPolicy(attr, provObjKeys, revokeObjIsNotApply, denyObjKeys, groupKeys, data);
 	}
 
 	public String getPolicyName(long key) throws tcAPIException, tcColumnNotFoundException {
 		HashMap search = new HashMap();
 		search.put("Access Policies.Key", key);
-		tcResultSet found = service.findAccessPolicies(search);
+		tcResultSet found = getService().findAccessPolicies(search);
 		if (!isNullOrEmpty(found)) {
 			found.goToRow(0);
 			return found.getStringValue("Access Policies.Name");
@@ -109,7 +109,7 @@ public class PolicyUtility extends ServiceProvider<tcAccessPolicyOperationsIntf>
 		LOG.log(Level.INFO, "Creating/updating policy {0}", polName);
 		HashMap<String, Object> search = new HashMap<>();
 		search.put("Access Policies.Name", polName);
-		tcResultSet found = service.findAccessPolicies(search);
+		tcResultSet found = getService().findAccessPolicies(search);
 		long ownPolicyId;
 		if (isNullOrEmpty(found)) {
 			ownPolicyId = createOwnPolicy(roleId, objectKey, parentFormKey, itResourceKey,
@@ -119,21 +119,22 @@ public class PolicyUtility extends ServiceProvider<tcAccessPolicyOperationsIntf>
 			found.goToRow(0);
 			ownPolicyId = found.getLongValue("Access Policies.Key");
 		}
-		tcResultSet assignedGroups = service.getAssignedGroups(ownPolicyId);
+		tcResultSet assignedGroups = getService().getAssignedGroups(ownPolicyId);
 		if (assignedGroups == null || assignedGroups.isEmpty()) {
-			service.assignGroups(ownPolicyId, new long[]{roleId});
+			getService().assignGroups(ownPolicyId, new long[]{roleId});
 		} else {
 			boolean exist = false;
-			for (int i = 0; i < assignedGroups.getRowCount(); ++i) {
-				assignedGroups.goToRow(i);
-				long currentRoleId = assignedGroups.getLongValue(ROLE_KEY_IN_OIM);
+			ResultSetCursor groups = new ResultSetCursor(assignedGroups);
+			int roleKey = groups.column(ROLE_KEY_IN_OIM);
+			while (groups.next()) {
+				long currentRoleId = groups.getLong(roleKey);
 				if (currentRoleId == roleId) {
 					exist = true;
 					break;
 				}
 			}
 			if (!exist) {
-				service.assignGroups(ownPolicyId, new long[]{roleId});
+				getService().assignGroups(ownPolicyId, new long[]{roleId});
 			}
 		}
 		LOG.log(Level.INFO, "Policy {0} created/updated", polName);
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One account to provision in a bulk request. Items are compared by
+ * identity, so a user may get several accounts of the same application
+ * instance in one batch.
+ */
+public final class ResourceRequest {
+
+	private final String userKey, applicationInstanceName;
+	private final Map<String, Serializable> fields;
+
+	public ResourceRequest(String userKey, String applicationInstanceName) {
+		this(userKey, applicationInstanceName, new HashMap<String, Serializable>());
+	}
+
+	public ResourceRequest(String userKey, String applicationInstanceName, Map<String, Serializable> fields) {
+		this.userKey = userKey;
+		this.applicationInstanceName = applicationInstanceName;
+		this.fields = Collections.unmodifiableMap(fields);
+	}
+
+	public String getUserKey() {
+		return userKey;
+	}
+
+	public String getApplicationInstanceName() {
+		return applicationInstanceName;
+	}
+
+	public Map<String, Serializable> getFields() {
+		return fields;
+	}
+
+	@Override
+	public String toString() {
+		return "ResourceRequest{" + "userKey=" + userKey + ", applicationInstanceName=" + applicationInstanceName + '}';
+	}
+
+}
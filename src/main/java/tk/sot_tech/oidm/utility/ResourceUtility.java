@@ -30,9 +30,12 @@ import Thor.API.Operations.tcFormDefinitionOperationsIntf;
 import Thor.API.Operations.tcFormInstanceOperationsIntf;
 import Thor.API.Operations.tcObjectOperationsIntf;
 import Thor.API.tcResultSet;
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import oracle.iam.api.OIMService;
@@ -55,13 +58,13 @@ import static tk.sot_tech.oidm.utility.UserUtility.USR_KEY_IN_OIM;
 
 public class ResourceUtility extends ServiceProvider {
 
-	private final tcObjectOperationsIntf objectService = Platform.getService(
+	private final LazyService<tcObjectOperationsIntf> objectService = new LazyService<>(
 		tcObjectOperationsIntf.class);
-	private final tcFormDefinitionOperationsIntf formService = Platform.getService(
+	private final LazyService<tcFormDefinitionOperationsIntf> formService = new LazyService<>(
 		tcFormDefinitionOperationsIntf.class);
-	private final ProvisioningService provisioningService = Platform.getService(
+	private final LazyService<ProvisioningService> provisioningService = new LazyService<>(
 		ProvisioningService.class);
-	private final tcFormInstanceOperationsIntf formInstanceService = Platform.getService(
+	private final LazyService<tcFormInstanceOperationsIntf> formInstanceService = new LazyService<>(
 		tcFormInstanceOperationsIntf.class);
 
 	public static final String[] FORM_SYSTEM_FIELDS = {"_KEY", "_CREATE", "_ROWVER", "_UPDATE",
@@ -86,76 +89,239 @@ public class ResourceUtility extends ServiceProvider {
 
 	private static final Logger LOG = Logger.getLogger(ResourceUtility.class.getName());
 
+	private static final NameKeyCache FORM_NAMES = new NameKeyCache(), OBJECT_NAMES = new NameKeyCache();
+
+	private static final int MAX_ACCOUNT_IDS = 100000;
+
+	/**
+	 * Process instance key to account id, stable for the life of an account.
+	 */
+	private static final Map<Long, Long> ACCOUNT_IDS = Collections.synchronizedMap(new LruMap<Long, Long>(MAX_ACCOUNT_IDS));
+
+	private static volatile ApplicationInstanceIndex appInstances;
+
+	private static volatile EntitlementCache entitlements;
+
+	private static volatile LoadingCache<String, FormDescriptor> formCache;
+
+	/**
+	 * Caches form metadata by form name, disabled by default.
+	 * A newly activated form version becomes visible after ttl or invalidateForm().
+	 * Entitlement creation always reads the current form version.
+	 */
+	public static void enableFormCache(long ttl, TimeUnit unit, int maxForms) {
+		formCache = new LoadingCache<>(ttl, unit, maxForms);
+	}
+
+	public static void disableFormCache() {
+		formCache = null;
+	}
+
+	public static void invalidateForm(String formName) {
+		FORM_NAMES.invalidate(formName);
+		LoadingCache<String, FormDescriptor> c = formCache;
+		if (c != null) {
+			c.invalidate(formName);
+		}
+	}
+
+	public static void invalidateAllForms() {
+		FORM_NAMES.clear();
+		LoadingCache<String, FormDescriptor> c = formCache;
+		if (c != null) {
+			c.invalidateAll();
+		}
+	}
+
 	public tcObjectOperationsIntf getObjectService() {
-		return objectService;
+		return objectService.get();
 	}
 
 	public tcFormDefinitionOperationsIntf getFormService() {
-		return formService;
+		return formService.get();
 	}
 
 	public ProvisioningService getProvisioningService() {
-		return provisioningService;
+		return provisioningService.get();
 	}
 
 	public tcFormInstanceOperationsIntf getFormInstanceService() {
-		return formInstanceService;
+		return formInstanceService.get();
+	}
+
+	/**
+	 * Form and resource object name/key pairs are cached without expiration.
+	 */
+	public static void invalidateObject(String name) {
+		OBJECT_NAMES.invalidate(name);
+	}
+
+	public static void invalidateNames() {
+		FORM_NAMES.clear();
+		OBJECT_NAMES.clear();
+	}
+
+	/**
+	 * Loads name/key pairs of all forms and resource objects with two searches.
+	 */
+	public void preloadNames() throws tcAPIException, tcColumnNotFoundException {
+		LinkedHashMap<String, Long> pairs = new LinkedHashMap<>();
+		ResultSetCursor found = new ResultSetCursor(getFormService().findForms(new HashMap<String, Object>()));
+		int nameColumn = found.column(FORM_NAME), keyColumn = found.column(FORM_KEY);
+		while (found.next()) {
+			pairs.put(found.getString(nameColumn), found.getLong(keyColumn));
+		}
+		FORM_NAMES.putAll(pairs);
+		pairs.clear();
+		found = new ResultSetCursor(getObjectService().findObjects(new HashMap<String, Object>()));
+		nameColumn = found.column(OBJECT_NAME);
+		keyColumn = found.column(OBJECT_KEY);
+		while (found.next()) {
+			pairs.put(found.getString(nameColumn), found.getLong(keyColumn));
+		}
+		OBJECT_NAMES.putAll(pairs);
 	}
 
 	public long getFormKey(String name) throws tcAPIException, tcColumnNotFoundException {
+		long key = FORM_NAMES.getKey(name);
+		if (key < 0) {
+			key = findFormKey(name);
+			FORM_NAMES.put(name, key);
+		}
+		return key;
+	}
+
+	public String getFormName(long key) throws tcAPIException, tcColumnNotFoundException {
+		String name = FORM_NAMES.getName(key);
+		if (name == null) {
+			name = findFormName(key);
+			FORM_NAMES.put(name, key);
+		}
+		return name;
+	}
+
+	public long getObjectKey(String name) throws tcAPIException, tcColumnNotFoundException {
+		long key = OBJECT_NAMES.getKey(name);
+		if (key < 0) {
+			key = findObjectKey(name);
+			OBJECT_NAMES.put(name, key);
+		}
+		return key;
+	}
+
+	public String getObjectName(long key) throws tcAPIException, tcColumnNotFoundException {
+		String name = OBJECT_NAMES.getName(key);
+		if (name == null) {
+			name = findObjectName(key);
+			OBJECT_NAMES.put(name, key);
+		}
+		return name;
+	}
+
+	protected long findFormKey(String name) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> search = new HashMap<>();
 		search.put(FORM_NAME, name);
-		tcResultSet found = formService.findForms(search);
+		tcResultSet found = getFormService().findForms(search);
 		found.goToRow(0);
 		return found.getLongValue(FORM_KEY);
 
 	}
 
-	public String getFormName(long key) throws tcAPIException, tcColumnNotFoundException {
+	protected String findFormName(long key) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> search = new HashMap<>();
 		search.put(FORM_KEY, key);
-		tcResultSet found = formService.findForms(search);
+		tcResultSet found = getFormService().findForms(search);
 		found.goToRow(0);
 		return found.getStringValue(FORM_NAME);
 
 	}
 
-	public long getObjectKey(String name) throws tcAPIException, tcColumnNotFoundException {
+	protected long findObjectKey(String name) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> search = new HashMap<>();
 		search.put(OBJECT_NAME, name);
-		tcResultSet found = objectService.findObjects(search);
+		tcResultSet found = getObjectService().findObjects(search);
 		found.goToRow(0);
 		return found.getLongValue(OBJECT_KEY);
 	}
 
-	public String getObjectName(long key) throws tcAPIException, tcColumnNotFoundException {
+	protected String findObjectName(long key) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> search = new HashMap<>();
 		search.put(OBJECT_KEY, key);
-		tcResultSet found = objectService.findObjects(search);
+		tcResultSet found = getObjectService().findObjects(search);
 		found.goToRow(0);
 		return found.getStringValue(OBJECT_NAME);
 	}
 
+	public FormDescriptor getFormDescriptor(String formName) throws tcAPIException, tcColumnNotFoundException,
+																	tcFormNotFoundException {
+		LoadingCache<String, FormDescriptor> c = formCache;
+		if (c == null) {
+			return loadFormDescriptor(formName);
+		}
+		try {
+			return c.get(formName, new LoadingCache.Loader<String, FormDescriptor>() {
+				@Override
+				public FormDescriptor load(String key) throws Exception {
+					return loadFormDescriptor(key);
+				}
+			});
+		} catch (Exception ex) {
+			Misc.propagateIfInstanceOf(ex, tcAPIException.class);
+			Misc.propagateIfInstanceOf(ex, tcColumnNotFoundException.class);
+			Misc.propagateIfInstanceOf(ex, tcFormNotFoundException.class);
+			throw Misc.propagate(ex);
+		}
+	}
+
+	protected FormDescriptor loadFormDescriptor(String formName) throws tcAPIException, tcColumnNotFoundException,
+																		tcFormNotFoundException {
+		HashMap<String, Object> search = new HashMap<>();
+		search.put(FORM_NAME, formName);
+		tcResultSet found = getFormService().findForms(search);
+		if (isNullOrEmpty(found)) {
+			throw new IllegalArgumentException("Form " + formName + " not exist");
+		}
+		found.goToRow(0);
+		long formKey = found.getLongValue(FORM_KEY);
+		FORM_NAMES.put(formName, formKey);
+		String description = found.getStringValue(FORM_DESCRIPTION);
+		int version = 0;
+		ArrayList<FormDescriptor.Field> formFields = new ArrayList<>();
+		tcResultSet rs = getFormService().getFormVersions(formKey);
+		if (!isNullOrEmpty(rs)) {
+			rs.goToRow(0);
+			version = rs.getIntValue(FORM_ACTIVE_VERSION);
+			ResultSetCursor fields = new ResultSetCursor(getFormService().getFormFields(formKey, version));
+			int nameColumn = fields.column(FORM_FIELD_NAME), keyColumn = fields.column(FORM_FIELD_KEY),
+				labelColumn = fields.column(FORM_FIELD_LABEL), orderColumn = fields.column(FORM_FIELD_ORDER),
+				typeColumn = fields.column(FORM_FIELD_TYPE),
+				lookupColumn = fields.hasColumn(FORM_FIELD_LOOKUP_CODE) ? fields.column(FORM_FIELD_LOOKUP_CODE) : -1,
+				encryptedColumn = fields.hasColumn(FORM_FIELD_ENCRYPTED) ? fields.column(FORM_FIELD_ENCRYPTED) : -1,
+				visibleColumn = fields.hasColumn(FORM_FIELD_VISIBLE) ? fields.column(FORM_FIELD_VISIBLE) : -1;
+			while (fields.next()) {
+				formFields.add(new FormDescriptor.Field(fields.getString(nameColumn),
+														fields.getLong(keyColumn),
+														fields.getString(labelColumn),
+														fields.getLong(orderColumn),
+														fields.getString(typeColumn),
+														lookupColumn < 0 ? null : fields.getString(lookupColumn),
+														encryptedColumn >= 0 && Misc.toBoolean(fields.getString(encryptedColumn)),
+														visibleColumn < 0 || !"false".equalsIgnoreCase(fields.getString(visibleColumn))));
+			}
+		}
+		return new FormDescriptor(formName, formKey, description, version, formFields);
+	}
+
 	public Map<String, Object> getFormFieldsForRender(String formName, Map<String, Object> data)
 		throws tcAPIException, tcColumnNotFoundException, tcFormNotFoundException {
 		for (String s : FORM_SYSTEM_FIELDS) {
 			data.remove(formName + s);
 		}
-		long formKey = getFormKey(formName);
-		tcResultSet rs = formService.getFormVersions(formKey);
-		if (!isNullOrEmpty(rs)) {
-			rs.goToRow(0);
-			int lastVer = rs.getIntValue(FORM_ACTIVE_VERSION);
-			rs = formService.getFormFields(formKey, lastVer);
-			for (int i = 0; i < rs.getRowCount(); ++i) {
-				rs.goToRow(i);
-				String field = rs.getStringValue(FORM_FIELD_NAME),
-					label = rs.getStringValue(FORM_FIELD_LABEL);
-				if (Misc.toBoolean(rs.getStringValue(FORM_FIELD_ENCRYPTED)) || "false".equalsIgnoreCase(rs.getStringValue(FORM_FIELD_VISIBLE))) {
-					data.remove(field);
-				} else if (!isNullOrEmpty(label)) {
-					data.put(label, data.remove(field));
-				}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFields()) {
+			if (field.isEncrypted() || !field.isVisible()) {
+				data.remove(field.getName());
+			} else if (!isNullOrEmpty(field.getLabel())) {
+				data.put(field.getLabel(), data.remove(field.getName()));
 			}
 		}
 		return data;
@@ -165,18 +331,8 @@ public class ResourceUtility extends ServiceProvider {
 																				  tcFormNotFoundException,
 																				  tcColumnNotFoundException {
 		HashMap<String, String> res = new HashMap<>();
-		long formKey = getFormKey(formName);
-		tcResultSet rs = formService.getFormVersions(formKey);
-		if (!isNullOrEmpty(rs)) {
-			rs.goToRow(0);
-			int lastVer = rs.getIntValue(FORM_ACTIVE_VERSION);
-			rs = formService.getFormFields(formKey, lastVer);
-			for (int i = 0; i < rs.getRowCount(); ++i) {
-				rs.goToRow(i);
-				String name = rs.getStringValue(FORM_FIELD_NAME),
-					label = rs.getStringValue(FORM_FIELD_LABEL);
-				res.put(name, label);
-			}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFields()) {
+			res.put(field.getName(), field.getLabel());
 		}
 		return res;
 	}
@@ -185,18 +341,8 @@ public class ResourceUtility extends ServiceProvider {
 																			  tcFormNotFoundException,
 																			  tcColumnNotFoundException {
 		HashMap<String, Long> res = new HashMap<>();
-		long formKey = getFormKey(formName);
-		tcResultSet rs = formService.getFormVersions(formKey);
-		if (!isNullOrEmpty(rs)) {
-			rs.goToRow(0);
-			int lastVer = rs.getIntValue(FORM_ACTIVE_VERSION);
-			rs = formService.getFormFields(formKey, lastVer);
-			for (int i = 0; i < rs.getRowCount(); ++i) {
-				rs.goToRow(i);
-				String name = rs.getStringValue(FORM_FIELD_NAME);
-				long key = rs.getLongValue(FORM_FIELD_KEY);
-				res.put(name, key);
-			}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFields()) {
+			res.put(field.getName(), field.getKey());
 		}
 		return res;
 	}
@@ -205,18 +351,8 @@ public class ResourceUtility extends ServiceProvider {
 																		tcFormNotFoundException,
 																		tcColumnNotFoundException {
 		HashMap<String, Long> orders = new HashMap<>();
-		long formKey = getFormKey(formName);
-		tcResultSet rs = formService.getFormVersions(formKey);
-		if (!isNullOrEmpty(rs)) {
-			rs.goToRow(0);
-			int lastVer = rs.getIntValue(FORM_ACTIVE_VERSION);
-			rs = formService.getFormFields(formKey, lastVer);
-			for (int i = 0; i < rs.getRowCount(); ++i) {
-				rs.goToRow(i);
-				String name = rs.getStringValue(FORM_FIELD_NAME);
-				long order = rs.getLongValue(FORM_FIELD_ORDER);
-				orders.put(name, order);
-			}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFields()) {
+			orders.put(field.getName(), field.getOrder());
 		}
 		return orders;
 	}
@@ -251,20 +387,8 @@ public class ResourceUtility extends ServiceProvider {
 																							   tcFormNotFoundException,
 																							   tcColumnNotFoundException {
 		HashMap<String, Pair<String, String>> res = new HashMap<>();
-		long formKey = getFormKey(formName);
-		tcResultSet rs = formService.getFormVersions(formKey);
-		if (!isNullOrEmpty(rs)) {
-			rs.goToRow(0);
-			int lastVer = rs.getIntValue(FORM_ACTIVE_VERSION);
-			rs = formService.getFormFields(formKey, lastVer);
-			List<String> fields = Arrays.asList(rs.getColumnNames());
-			for (int i = 0; i < rs.getRowCount(); ++i) {
-				rs.goToRow(i);
-				String field = rs.getStringValue(FORM_FIELD_NAME),
-					type = rs.getStringValue(FORM_FIELD_TYPE),
-					lookup = fields.contains(FORM_FIELD_LOOKUP_CODE) ? rs.getStringValue(FORM_FIELD_LOOKUP_CODE) : null;
-				res.put(field, new Pair<>(type, lookup));
-			}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFields()) {
+			res.put(field.getName(), new Pair<>(field.getType(), field.getLookup()));
 		}
 		return res;
 	}
@@ -273,17 +397,152 @@ public class ResourceUtility extends ServiceProvider {
 																						  tcFormNotFoundException,
 																						  tcColumnNotFoundException {
 		ArrayList<String> res = new ArrayList<>();
-		for (Entry<String, Pair<String, String>> e : getFormFieldNamesAndTypes(formName).entrySet()) {
-			if (type.equalsIgnoreCase(e.getValue().key)) {
-				res.add(e.getKey());
-			}
+		for (FormDescriptor.Field field : getFormDescriptor(formName).getFieldsByType(type)) {
+			res.add(field.getName());
 		}
 		return res;
 	}
 
+	/**
+	 * Caches entitlements found or created through this class. Entitlements
+	 * removed elsewhere stay visible until ttl or invalidateEntitlement().
+	 */
+	public static void enableEntitlementCache(long ttl, TimeUnit unit, int maxEntitlements) {
+		entitlements = new EntitlementCache(ttl, unit, maxEntitlements);
+	}
+
+	public static void disableEntitlementCache() {
+		entitlements = null;
+	}
+
+	public static void invalidateEntitlement(String code) {
+		EntitlementCache c = entitlements;
+		if (c != null) {
+			c.invalidate(code);
+		}
+	}
+
+	public static void invalidateEntitlement(ApplicationInstance appInstance, String code) {
+		EntitlementCache c = entitlements;
+		if (c != null) {
+			c.invalidate(appInstance.getObjectKey(), appInstance.getItResourceKey(), code);
+		}
+	}
+
+	public static void invalidateEntitlements() {
+		EntitlementCache c = entitlements;
+		if (c != null) {
+			c.invalidateAll();
+		}
+	}
+
+	/**
+	 * Loads all entitlements of the application instance into the entitlement cache.
+	 *
+	 * @return number of entitlements loaded, -1 if the cache is disabled
+	 */
+	public int warmUpEntitlements(String appInstanceName) throws ApplicationInstanceNotFoundException,
+																 GenericAppInstanceServiceException,
+																 GenericEntitlementServiceException {
+		EntitlementCache c = entitlements;
+		if (c == null) {
+			return -1;
+		}
+		ApplicationInstance appInstance = getApplicationInstance(appInstanceName);
+		if (appInstance == null) {
+			throw new IllegalArgumentException("Application instance " + appInstanceName + " not found");
+		}
+		List<Entitlement> ents = findEntitlements(appInstance);
+		for (Entitlement e : ents) {
+			c.put(e);
+		}
+		return ents.size();
+	}
+
+	/**
+	 * @return entitlement of the application instance by code, null if not found
+	 */
+	public Entitlement getEntitlement(String appInstanceName, String code) throws ApplicationInstanceNotFoundException,
+																				 GenericAppInstanceServiceException,
+																				 GenericEntitlementServiceException {
+		ApplicationInstance appInstance = getApplicationInstance(appInstanceName);
+		if (appInstance == null) {
+			throw new IllegalArgumentException("Application instance " + appInstanceName + " not found");
+		}
+		EntitlementCache c = entitlements;
+		Entitlement cached = c == null ? null : c.get(appInstance.getObjectKey(), appInstance.getItResourceKey(), code);
+		if (cached != null) {
+			return cached;
+		}
+		SearchCriteria criteria = new SearchCriteria(
+			new SearchCriteria(ProvisioningConstants.EntitlementSearchAttribute.ENTITLEMENT_CODE.getId(), code,
+							   SearchCriteria.Operator.EQUAL),
+			appInstanceCriteria(appInstance),
+			SearchCriteria.Operator.AND);
+		List<Entitlement> ents = Platform.getService(EntitlementService.class).findEntitlements(criteria,
+																							   new HashMap<String, Object>());
+		if (isNullOrEmpty(ents)) {
+			return null;
+		}
+		if (c != null) {
+			c.put(ents.get(0));
+		}
+		return ents.get(0);
+	}
+
+	/**
+	 * Application instances are indexed with one search on first use. Instances
+	 * created or changed later become visible after refreshApplicationInstances().
+	 */
+	public static void invalidateApplicationInstances() {
+		appInstances = null;
+	}
+
+	public ApplicationInstanceIndex refreshApplicationInstances() throws GenericAppInstanceServiceException {
+		return refreshApplicationInstances(Platform.getService(ApplicationInstanceService.class));
+	}
+
+	public ApplicationInstanceIndex getApplicationInstances() throws GenericAppInstanceServiceException {
+		return getApplicationInstances(Platform.getService(ApplicationInstanceService.class));
+	}
+
+	/**
+	 * @return indexed instance, or found directly if created after the index was loaded
+	 */
+	public ApplicationInstance getApplicationInstance(String name) throws ApplicationInstanceNotFoundException,
+																		   GenericAppInstanceServiceException {
+		return getApplicationInstance(Platform.getService(ApplicationInstanceService.class), name);
+	}
+
+	private static ApplicationInstanceIndex refreshApplicationInstances(ApplicationInstanceService ais) throws
+		GenericAppInstanceServiceException {
+		ApplicationInstanceIndex index = new ApplicationInstanceIndex(ais.findApplicationInstance(
+			new SearchCriteria(ApplicationInstance.APPINST_NAME, "*", SearchCriteria.Operator.EQUAL),
+			new HashMap<String, Object>()));
+		appInstances = index;
+		LOG.log(Level.INFO, "Indexed {0} application instances", index.size());
+		return index;
+	}
+
+	private static ApplicationInstanceIndex getApplicationInstances(ApplicationInstanceService ais) throws
+		GenericAppInstanceServiceException {
+		ApplicationInstanceIndex index = appInstances;
+		return index == null ? refreshApplicationInstances(ais) : index;
+	}
+
+	private static ApplicationInstance getApplicationInstance(ApplicationInstanceService ais, String name) throws
+		ApplicationInstanceNotFoundException, GenericAppInstanceServiceException {
+		ApplicationInstance applicationInstance = getApplicationInstances(ais).get(name);
+		return applicationInstance == null ? ais.findApplicationInstanceByName(name) : applicationInstance;
+	}
+
 	public String getAppInstanceName(long objectId, long itResource) throws
 		GenericAppInstanceServiceException {
 		ApplicationInstanceService aiService = Platform.getService(ApplicationInstanceService.class);
+		ApplicationInstance indexed = getApplicationInstances(aiService).get(objectId, itResource);
+		if (indexed != null) {
+			return indexed.getApplicationInstanceName();
+		}
 
 		SearchCriteria objectCriteria = new SearchCriteria(ApplicationInstance.OBJ_KEY, String.
 														   valueOf(objectId).replaceAll("\\.\\, ",
@@ -307,7 +566,7 @@ public class ResourceUtility extends ServiceProvider {
 	public String getFormDescription(String name) throws tcAPIException, tcColumnNotFoundException {
 		HashMap<String, Object> search = new HashMap<>();
 		search.put(FORM_NAME, name);
-		tcResultSet found = formService.findForms(search);
+		tcResultSet found = getFormService().findForms(search);
 		found.goToRow(0);
 		return found.getStringValue(FORM_DESCRIPTION);
 	}
@@ -316,39 +575,50 @@ public class ResourceUtility extends ServiceProvider {
 																	tcColumnNotFoundException,
 																	tcFormNotFoundException {
 		StringBuilder sb = new StringBuilder();
-		getFormFieldsForRender(data.keySet().iterator().next().replaceAll("(UD_[A-Z0-9]*).*", "$1"),
-							   data);
-		for (String key : data.keySet()) {
-			sb.append(key)
-				.append(": ")
-				.append(data.get(key))
-				.append('\n');
+		try {
+			renderFormValues(data, sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
 		}
 		return sb.toString();
 	}
 
+	/**
+	 * Writes process form values by label, the form is taken from the first field name.
+	 * The data map is not modified.
+	 */
+	public void renderFormValues(Map<String, ?> data, Appendable out) throws IOException, tcAPIException,
+																			 tcColumnNotFoundException,
+																			 tcFormNotFoundException {
+		if (!data.isEmpty()) {
+			String formName = FormRenderer.formNameOf(data.keySet().iterator().next());
+			getFormDescriptor(formName).getRenderer().render(data, out);
+		}
+	}
+
 	public String renderChildFormsValues(Map<String, ArrayList<ChildTableRecord>> childData) throws
 		tcAPIException, tcColumnNotFoundException, tcFormNotFoundException {
 		StringBuilder sb = new StringBuilder();
-		for (String childName : childData.keySet()) {
-			sb.append(getFormDescription(childName));
-			sb.append(":\n");
-			for (ChildTableRecord ctr : childData.get(childName)) {
-				Map<String, Object> data = ctr.getChildData();
-				getFormFieldsForRender(childName, data);
-				for (String field : data.keySet()) {
-					sb.append(ctr.getAction())
-						.append(" - ")
-						.append(field)
-						.append(": ")
-						.append(data.get(field))
-						.append('\n');
-				}
-			}
+		try {
+			renderChildFormsValues(childData, sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
 		}
 		return sb.toString();
 	}
 
+	public void renderChildFormsValues(Map<String, ArrayList<ChildTableRecord>> childData, Appendable out) throws
+		IOException, tcAPIException, tcColumnNotFoundException, tcFormNotFoundException {
+		for (Entry<String, ArrayList<ChildTableRecord>> child : childData.entrySet()) {
+			FormDescriptor form = getFormDescriptor(child.getKey());
+			FormRenderer renderer = form.getRenderer();
+			out.append(form.getDescription()).append(":\n");
+			for (ChildTableRecord ctr : child.getValue()) {
+				renderer.render(ctr.getChildData(), String.valueOf(ctr.getAction()), out);
+			}
+		}
+	}
+
 	public Entitlement findOrCreateEntitlement(String appInstanceName, String lkName, String lkCode, String lkDecode, String formName,
 											   String formFieldName)
 		throws GenericEntitlementServiceException,
@@ -364,6 +634,11 @@ public class ResourceUtility extends ServiceProvider {
 			   FormFieldNotFoundException,
 			   LookupValueNotFoundException,
 			   FormNotFoundException {
+		EntitlementCache c = entitlements;
+		Entitlement cached = c == null ? null : c.get(lkCode);
+		if (cached != null) {
+			return cached;
+		}
 		EntitlementService entService = Platform.getService(EntitlementService.class);
 		SearchCriteria entCriteria = new SearchCriteria(ProvisioningConstants.EntitlementInstanceSearchAttribute.ENTITLEMENT_CODE.getId(),
 														lkCode,
@@ -371,66 +646,206 @@ public class ResourceUtility extends ServiceProvider {
 		List<Entitlement> ents = entService.findEntitlements(entCriteria, new HashMap<String, Object>());
 		Entitlement result;
 		if (Misc.isNullOrEmpty(ents)) {
-			long lookupValueKey = -1;
-			Pair<String, String> lkPair = new Pair<>(lkCode, lkDecode);
+			long lookupValueKey;
 			try (LookupUtility lku = new LookupUtility()) {
-				HashMap<Long, Pair<String, String>> lookupWithKeys = lku.getLookupWithKeys(lkName);
-
-				for (Entry<Long, Pair<String, String>> e : lookupWithKeys.entrySet()) {
-					if (lkPair.equals(e.getValue())) {
-						lookupValueKey = e.getKey();
-						break;
-					}
+				lookupValueKey = lku.getLookupTable(lkName).getKey(lkCode, lkDecode);
+				if (lookupValueKey == -1 && LookupUtility.getCache() != null) {
+					// the value may have been added after the lookup was cached
+					LookupUtility.invalidateLookup(lkName);
+					lookupValueKey = lku.getLookupTable(lkName).getKey(lkCode, lkDecode);
 				}
 			}
 			if (lookupValueKey == -1) {
-				throw new IllegalArgumentException("Lookup value key for pair " + lkPair + " not found");
+				throw new IllegalArgumentException("Lookup value key for pair " + new Pair<>(lkCode, lkDecode) + " not found");
 			}
-			ApplicationInstanceService aiService = Platform.getService(ApplicationInstanceService.class);
-			ApplicationInstance appInstance = aiService.findApplicationInstanceByName(appInstanceName);
+			ApplicationInstance appInstance = getApplicationInstance(appInstanceName);
 			if (appInstance == null) {
 				throw new IllegalArgumentException("Application instance " + appInstanceName + " not found");
 			}
-			long formKey = getFormKey(formName), formFieldKey = getFormFieldNamesAndKeys(formName).get(formFieldName);
-			Entitlement ent = new Entitlement();
-			ent.setEntitlementCode(lkCode);
-			ent.setEntitlementValue(lkDecode);
-			ent.setDisplayName(lkDecode.replaceFirst(appInstance.getItResourceName() + '~', ""));
-			ent.setItResourceKey(appInstance.getItResourceKey());
-			ent.setObjectKey(appInstance.getObjectKey());
-			ent.setAppInstance(appInstance);
-			if (formFieldKey == -1) {
-				throw new IllegalArgumentException("Unable to find field key for name " + formFieldName + " form " + formName);
-			}
-			ent.setFormKey(formKey);
-			ent.setFormFieldKey(formFieldKey);
-			ent.setLookupValueKey(lookupValueKey);
-			ent.setValid(Boolean.TRUE);
-			result = entService.addEntitlement(ent);
+			FormDescriptor form = loadFormDescriptor(formName);
+			result = entService.addEntitlement(newEntitlement(appInstance, lkCode, lkDecode, form.getKey(),
+															  getFormFieldKey(form, formFieldName), lookupValueKey));
 			LOG.log(Level.INFO, "Created new entitlement {0}", result);
 		} else {
 			result = ents.get(0);
 			LOG.log(Level.INFO, "Found entitlement {0}", result);
 		}
+		if (c != null) {
+			c.put(result);
+		}
 		return result;
 	}
 
+	/**
+	 * Creates missing entitlements of one application instance and form field.
+	 * Existing entitlements and lookup value keys are read once, only missing
+	 * codes are created, with up to parallelism concurrent workers.
+	 * In the OIM server the workers need ParallelBatch.setExecutor() to run
+	 * with the caller's identity.
+	 *
+	 * @param values (code, decode) pairs of lkName, repeated codes are imported once
+	 */
+	public EntitlementImportResult importEntitlements(String appInstanceName, String lkName, String formName,
+													  String formFieldName, Iterable<Pair<String, String>> values,
+													  int parallelism)
+		throws GenericEntitlementServiceException,
+			   tcAPIException,
+			   tcInvalidLookupException,
+			   tcColumnNotFoundException,
+			   ApplicationInstanceNotFoundException,
+			   GenericAppInstanceServiceException,
+			   tcFormNotFoundException,
+			   InterruptedException {
+		final ApplicationInstance appInstance = getApplicationInstance(appInstanceName);
+		if (appInstance == null) {
+			throw new IllegalArgumentException("Application instance " + appInstanceName + " not found");
+		}
+		final FormDescriptor form = loadFormDescriptor(formName);
+		final long formFieldKey = getFormFieldKey(form, formFieldName);
+		final LookupTable lookup;
+		LookupUtility.invalidateLookup(lkName);
+		try (LookupUtility lku = new LookupUtility()) {
+			lookup = lku.getLookupTable(lkName);
+		}
+		EntitlementCache c = entitlements;
+		HashMap<String, Entitlement> found = new HashMap<>();
+		for (Entitlement e : findEntitlements(appInstance)) {
+			found.put(e.getEntitlementCode(), e);
+			if (c != null) {
+				c.put(e);
+			}
+		}
+		LinkedHashMap<String, Entitlement> existing = new LinkedHashMap<>();
+		final LinkedHashMap<String, String> missing = new LinkedHashMap<>();
+		for (Pair<String, String> value : values) {
+			if (existing.containsKey(value.key) || missing.containsKey(value.key)) {
+				continue;
+			}
+			Entitlement e = found.get(value.key);
+			if (e == null) {
+				missing.put(value.key, value.value);
+			} else {
+				existing.put(value.key, e);
+			}
+		}
+		BatchResult<String, Entitlement> created = ParallelBatch.run(missing.keySet(), parallelism,
+																	  new ParallelBatch.WorkerFactory<String, Entitlement>() {
+			@Override
+			public ParallelBatch.Worker<String, Entitlement> newWorker() {
+				final EntitlementService entService = Platform.getService(EntitlementService.class);
+				return new ParallelBatch.Worker<String, Entitlement>() {
+					@Override
+					public Entitlement process(String code) throws Exception {
+						String decode = missing.get(code);
+						long lookupValueKey = lookup.getKey(code, decode);
+						if (lookupValueKey == -1) {
+							throw new IllegalArgumentException("Lookup value key for pair " + new Pair<>(code, decode) + " not found");
+						}
+						return entService.addEntitlement(newEntitlement(appInstance, code, decode, form.getKey(),
+																		formFieldKey, lookupValueKey));
+					}
+
+					@Override
+					public void close() {
+					}
+				};
+			}
+		});
+		if (c != null) {
+			for (Entitlement e : created.getResults().values()) {
+				c.put(e);
+			}
+		}
+		EntitlementImportResult result = new EntitlementImportResult(created.getResults(), existing, created.getFailures());
+		LOG.log(Level.INFO, "Entitlement import to {0}: {1}", new Object[]{appInstanceName, result});
+		return result;
+	}
+
+	protected List<Entitlement> findEntitlements(ApplicationInstance appInstance) throws
+		GenericEntitlementServiceException {
+		List<Entitlement> ents = Platform.getService(EntitlementService.class).findEntitlements(
+			appInstanceCriteria(appInstance), new HashMap<String, Object>());
+		return ents == null ? new ArrayList<Entitlement>() : ents;
+	}
+
+	private static SearchCriteria appInstanceCriteria(ApplicationInstance appInstance) {
+		return new SearchCriteria(
+			new SearchCriteria(ProvisioningConstants.EntitlementSearchAttribute.OBJ_KEY.getId(),
+							   appInstance.getObjectKey(), SearchCriteria.Operator.EQUAL),
+			new SearchCriteria(ProvisioningConstants.EntitlementSearchAttribute.ITRES_KEY.getId(),
+							   appInstance.getItResourceKey(), SearchCriteria.Operator.EQUAL),
+			SearchCriteria.Operator.AND);
+	}
+
+	private static long getFormFieldKey(FormDescriptor form, String formFieldName) {
+		FormDescriptor.Field field = form.getField(formFieldName);
+		if (field == null) {
+			throw new IllegalArgumentException("Unable to find field key for name " + formFieldName + " form " + form.getName());
+		}
+		return field.getKey();
+	}
+
+	private static Entitlement newEntitlement(ApplicationInstance appInstance, String code, String decode, long formKey,
+											  long formFieldKey, long lookupValueKey) {
+		Entitlement ent = new Entitlement();
+		ent.setEntitlementCode(code);
+		ent.setEntitlementValue(decode);
+		ent.setDisplayName(decode.replaceFirst(appInstance.getItResourceName() + '~', ""));
+		ent.setItResourceKey(appInstance.getItResourceKey());
+		ent.setObjectKey(appInstance.getObjectKey());
+		ent.setAppInstance(appInstance);
+		ent.setFormKey(formKey);
+		ent.setFormFieldKey(formFieldKey);
+		ent.setLookupValueKey(lookupValueKey);
+		ent.setValid(Boolean.TRUE);
+		return ent;
+	}
+
+	/**
+	 * Resolves the account id through a cached process instance index and
+	 * fetches only that account. On an index miss all accounts of the user
+	 * are indexed once, without their form data.
+	 *
+	 * @return null if the process instance is not an account of userId
+	 */
 	public Account getAccountByProcessInstanceKey(long userId, long processInstanceKey) {
 		try {
-			List<Account> accounts = provisioningService.getAccountsProvisionedToUser(String.
-				valueOf(userId), true);
-			String procInstKey = String.valueOf(processInstanceKey);
-			for (Account a : accounts) {
-				if (procInstKey.equals(a.getProcessInstanceKey())) {
-					return a;
+			Long accountId = ACCOUNT_IDS.get(processInstanceKey);
+			if (accountId != null) {
+				try {
+					Account acc = getProvisioningService().getAccountDetails(accountId);
+					// the index is shared by all callers, the account may be someone else's
+					return String.valueOf(userId).equals(acc.getUserKey()) ? acc : null;
+				} catch (AccountNotFoundException ex) {
+					ACCOUNT_IDS.remove(processInstanceKey);
 				}
 			}
+			accountId = indexUserAccounts(userId, processInstanceKey);
+			if (accountId != null) {
+				return getProvisioningService().getAccountDetails(accountId);
+			}
 		} catch (Exception ex) {
 			LOG.severe(Misc.ownStack(ex));
 		}
 		return null;
 	}
 
+	private Long indexUserAccounts(long userId, long processInstanceKey) throws UserNotFoundException,
+																			   GenericProvisioningException {
+		Long found = null;
+		for (Account a : getProvisioningService().getAccountsProvisionedToUser(String.valueOf(userId), false)) {
+			if (isNullOrEmpty(a.getProcessInstanceKey()) || isNullOrEmpty(a.getAccountID())) {
+				continue;
+			}
+			long pik = Long.parseLong(a.getProcessInstanceKey()), accountId = Long.parseLong(a.getAccountID());
+			ACCOUNT_IDS.put(pik, accountId);
+			if (pik == processInstanceKey) {
+				found = accountId;
+			}
+		}
+		return found;
+	}
+
 //	private static final String GET_ACCOUNT_ID_BY_ORC = "SELECT OIU_KEY FROM OIU WHERE ORC_KEY = ?";
 //	
 //	public Account getAccountByProcessInstanceKey(long processInstanceKey) {
@@ -438,7 +853,7 @@ public class ResourceUtility extends ServiceProvider {
 //			ArrayList<HashMap<String, Object>> result = Utility.executeQuery(GET_ACCOUNT_ID_BY_ORC, processInstanceKey);
 //			if(!isNullOrEmpty(result)){
 //				Long accountKey = ((Number)result.get(0).get("OIU_KEY")).longValue();
-//				return provisioningService.getAccountDetails(accountKey);
+//				return getProvisioningService().getAccountDetails(accountKey);
 //			}
 //			
 //		}
@@ -466,7 +881,7 @@ public class ResourceUtility extends ServiceProvider {
 		} catch (Exception ex) {
 			LOG.severe(ownStack(ex));
 		}
-		List<Account> accounts = provisioningService.getAccountsProvisionedToUser(userId);
+		List<Account> accounts = getProvisioningService().getAccountsProvisionedToUser(userId);
 		for (Account account : accounts) {
 			ApplicationInstance appInstance = account.getAppInstance();
 			String ain = appInstance.getApplicationInstanceName();
@@ -479,7 +894,7 @@ public class ResourceUtility extends ServiceProvider {
 				  */)
 				&& account.getAccountType() == Primary && ain.equals(appInstanceName)) {
 				Long processInstanceKey = Long.decode(account.getProcessInstanceKey());
-				tcResultSet formData = formInstanceService.getProcessFormDataInViewMode(
+				tcResultSet formData = getFormInstanceService().getProcessFormDataInViewMode(
 					processInstanceKey);
 				if (!isNullOrEmpty(formData)) {
 					for (int i = 0; i < formData.getRowCount(); ++i) {
@@ -511,17 +926,113 @@ public class ResourceUtility extends ServiceProvider {
 			   tcFormNotFoundException,
 			   tcRequiredDataMissingException,
 			   tcProcessNotFoundException {
-		formInstanceService.setProcessFormData(processInstanceKey, fieldValues);
+		getFormInstanceService().setProcessFormData(processInstanceKey, fieldValues);
 		return OPERATION_SUCCESS_VALUE;
 	}
 
+	/**
+	 * Updates process forms of many process instances with up to parallelism
+	 * concurrent workers. Current values are read first and only differing
+	 * fields are written; instances that already match are not written at all.
+	 * Workers run on ParallelBatch.getExecutor() threads, see ParallelBatch
+	 * for in-server use.
+	 *
+	 * @param updates     process instance key to field values
+	 * @param parallelism maximum number of concurrent updates
+	 * @param limiter     shared rate limit of updated instances per second, null for none
+	 *
+	 * @return per process instance true if written, false if nothing changed;
+	 *         failed instances are reported in failures
+	 */
+	public BatchResult<Long, Boolean> setResourceFields(final Map<Long, ? extends Map<String, Object>> updates,
+														int parallelism, RateLimiter limiter) throws InterruptedException {
+		return ParallelBatch.run(updates.keySet(), parallelism, limiter, new ParallelBatch.WorkerFactory<Long, Boolean>() {
+			@Override
+			public ParallelBatch.Worker<Long, Boolean> newWorker() {
+				final ResourceUtility ru = new ResourceUtility();
+				return new ParallelBatch.Worker<Long, Boolean>() {
+					@Override
+					public Boolean process(Long processInstanceKey) throws Exception {
+						return ru.setChangedResourceFields(processInstanceKey, updates.get(processInstanceKey));
+					}
+
+					@Override
+					public void close() {
+						ru.close();
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Compares a new value with the stored cell the way the form keeps it:
+	 * dates by instant, numbers numerically, booleans as checkbox flags.
+	 */
+	private static boolean isSameValue(Object value, ResultSetCursor current, int column) throws tcAPIException,
+																								 tcColumnNotFoundException {
+		String old = current.getString(column);
+		if (value == null || "".equals(value)) {
+			return isNullOrEmpty(old);
+		}
+		if (isNullOrEmpty(old)) {
+			return false;
+		}
+		if (value instanceof Date) {
+			Date date = current.getDate(column);
+			return date != null && date.getTime() == ((Date) value).getTime();
+		}
+		if (value instanceof Boolean) {
+			return (Boolean) value == Misc.toBoolean(old);
+		}
+		if (value instanceof Number) {
+			try {
+				return new BigDecimal(value.toString()).compareTo(new BigDecimal(old.trim())) == 0;
+			} catch (NumberFormatException ex) {
+				return false;
+			}
+		}
+		return String.valueOf(value).equals(old);
+	}
+
+	/**
+	 * @return false if all values already matched and nothing was written
+	 */
+	public boolean setChangedResourceFields(long processInstanceKey, Map<String, Object> fieldValues)
+		throws tcAPIException,
+			   tcInvalidValueException,
+			   tcNotAtomicProcessException,
+			   tcFormNotFoundException,
+			   tcRequiredDataMissingException,
+			   tcProcessNotFoundException,
+			   tcColumnNotFoundException {
+		HashMap<String, Object> changed = new HashMap<>();
+		ResultSetCursor current = new ResultSetCursor(getFormInstanceService().getProcessFormData(processInstanceKey));
+		boolean hasRow = current.next();
+		for (Entry<String, Object> e : fieldValues.entrySet()) {
+			Object value = e.getValue();
+			if (!hasRow || !current.hasColumn(e.getKey())) {
+				changed.put(e.getKey(), value);
+				continue;
+			}
+			if (!isSameValue(value, current, current.column(e.getKey()))) {
+				changed.put(e.getKey(), value);
+			}
+		}
+		if (changed.isEmpty()) {
+			return false;
+		}
+		getFormInstanceService().setProcessFormData(processInstanceKey, changed);
+		return true;
+	}
+
 	public String setAccountField(long userId, long procInstKey, String field, String value) throws
 		AccountNotFoundException, AccessDeniedException, GenericProvisioningException {
 		Account acc = getAccountByProcessInstanceKey(userId, procInstKey);
 		AccountData accData = acc.getAccountData();
 		Map<String, Object> data = accData.getData();
 		data.put(field, value);
-		provisioningService.modify(acc);
+		getProvisioningService().modify(acc);
 		return OPERATION_SUCCESS_VALUE;
 	}
 
@@ -579,24 +1090,182 @@ public class ResourceUtility extends ServiceProvider {
 	public String initCreateResourceRequest(String userKey, String applicationInstanceName,
 											HashMap<String, Serializable> fields, boolean eh) throws tcAPIException, tcColumnNotFoundException,
 																									 tcFormNotFoundException, OIMServiceException {
-		ApplicationInstanceService ais = eh
-										 ? oracle.iam.platform.Platform.getServiceForEventHandlers(ApplicationInstanceService.class,
-																								   null, null, null, null)
-										 : Platform.getService(ApplicationInstanceService.class);
-		ApplicationInstance applicationInstance = ais.findApplicationInstanceByName(applicationInstanceName);
-		OIMService oimService = eh
-								? oracle.iam.platform.Platform.getServiceForEventHandlers(OIMService.class,
-																						  null, null, null, null)
-								: Platform.getService(OIMService.class);
+		ApplicationInstance applicationInstance = getApplicationInstance(appInstanceService(eh), applicationInstanceName);
+		List<RequestBeneficiaryEntity> entities = new ArrayList<>();
+		entities.add(provisionEntity(applicationInstance, fields));
+
+		List<Beneficiary> beneficiaries = new ArrayList<>();
+		beneficiaries.add(beneficiary(userKey, entities));
+		RequestData requestData = new RequestData();
+		requestData.setBeneficiaries(beneficiaries);
+
+		oracle.iam.vo.OperationResult operationResult = oimService(eh).doOperation(requestData,
+																				   OIMService.Intent.REQUEST);
+		if (operationResult == null) {
+			return null;
+		}
+		String result = operationResult.getOperationStatus().name();
+		LOG.log(Level.INFO, "AppInstance {0} for userid {1} request {2}", new Object[]{applicationInstanceName, userKey, result});
+		return result;
+	}
+
+	public String initCreateResourceRequest(String userKey, String applicationInstanceName) throws tcAPIException, tcColumnNotFoundException,
+																								   tcFormNotFoundException, OIMServiceException {
+		return initCreateResourceRequest(userKey, applicationInstanceName, new HashMap<String, Serializable>(), false);
+	}
+
+	public String initRevokeResourceRequest(String userKey, String applicationInstanceName, String accountId, boolean eh) throws OIMServiceException {
+		List<RequestBeneficiaryEntity> entities = new ArrayList<>();
+		entities.add(revokeEntity(applicationInstanceName, accountId));
+
+		List<Beneficiary> beneficiaries = new ArrayList<>();
+		beneficiaries.add(beneficiary(userKey, entities));
+		RequestData requestData = new RequestData();
+		requestData.setBeneficiaries(beneficiaries);
+
+		oracle.iam.vo.OperationResult operationResult = oimService(eh).doOperation(requestData,
+																				   OIMService.Intent.REQUEST);
+
+		if (operationResult == null) {
+			return null;
+		}
+		return operationResult.getOperationStatus().name();
+	}
+
+	/**
+	 * Submits provisioning requests packed into requests of up to chunkSize
+	 * target entities, grouped into one beneficiary per user. A chunk rejected
+	 * as a whole is resubmitted item by item, so failures name the bad items.
+	 *
+	 * @return per item the operation result of the request it was submitted with;
+	 *         items that failed or have an unknown application instance are reported in failures
+	 */
+	public BatchResult<ResourceRequest, oracle.iam.vo.OperationResult> initCreateResourceRequests(
+		Collection<ResourceRequest> requests, int chunkSize, boolean eh) {
+		ApplicationInstanceService ais = appInstanceService(eh);
+		LinkedHashMap<ResourceRequest, RequestBeneficiaryEntity> entities = new LinkedHashMap<>();
+		HashMap<ResourceRequest, String> users = new HashMap<>();
+		HashMap<ResourceRequest, Exception> failures = new HashMap<>();
+		for (ResourceRequest r : requests) {
+			try {
+				ApplicationInstance applicationInstance = getApplicationInstance(ais, r.getApplicationInstanceName());
+				entities.put(r, provisionEntity(applicationInstance, r.getFields()));
+				users.put(r, r.getUserKey());
+			} catch (Exception ex) {
+				failures.put(r, ex);
+			}
+		}
+		return submitRequests(requests, users, entities, failures, chunkSize, eh);
+	}
+
+	/**
+	 * Same as initCreateResourceRequests for revocation.
+	 *
+	 * @param accounts account id to (user key, application instance name)
+	 *
+	 * @return results and failures by account id
+	 */
+	public BatchResult<String, oracle.iam.vo.OperationResult> initRevokeResourceRequests(
+		Map<String, Pair<String, String>> accounts, int chunkSize, boolean eh) {
+		LinkedHashMap<String, RequestBeneficiaryEntity> entities = new LinkedHashMap<>();
+		HashMap<String, String> users = new HashMap<>();
+		for (Entry<String, Pair<String, String>> e : accounts.entrySet()) {
+			entities.put(e.getKey(), revokeEntity(e.getValue().value, e.getKey()));
+			users.put(e.getKey(), e.getValue().key);
+		}
+		return submitRequests(accounts.keySet(), users, entities, new HashMap<String, Exception>(), chunkSize, eh);
+	}
+
+	private <I> BatchResult<I, oracle.iam.vo.OperationResult> submitRequests(
+		Collection<I> items, Map<I, String> users, Map<I, RequestBeneficiaryEntity> entities,
+		Map<I, Exception> failures, int chunkSize, boolean eh) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		OIMService oimService = oimService(eh);
+		HashMap<I, oracle.iam.vo.OperationResult> results = new HashMap<>();
+		ArrayList<I> chunk = new ArrayList<>(chunkSize);
+		for (I item : entities.keySet()) {
+			chunk.add(item);
+			if (chunk.size() == chunkSize) {
+				submitChunk(oimService, chunk, users, entities, results, failures);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			submitChunk(oimService, chunk, users, entities, results, failures);
+		}
+		LinkedHashMap<I, oracle.iam.vo.OperationResult> orderedResults = new LinkedHashMap<>();
+		LinkedHashMap<I, Exception> orderedFailures = new LinkedHashMap<>();
+		for (I item : items) {
+			if (results.containsKey(item)) {
+				orderedResults.put(item, results.get(item));
+			} else {
+				orderedFailures.put(item, failures.get(item));
+			}
+		}
+		return new BatchResult<>(orderedResults, orderedFailures);
+	}
+
+	private <I> void submitChunk(OIMService oimService, List<I> chunk, Map<I, String> users,
+								 Map<I, RequestBeneficiaryEntity> entities,
+								 Map<I, oracle.iam.vo.OperationResult> results, Map<I, Exception> failures) {
+		LinkedHashMap<String, List<RequestBeneficiaryEntity>> byUser = new LinkedHashMap<>();
+		for (I item : chunk) {
+			String user = users.get(item);
+			List<RequestBeneficiaryEntity> userEntities = byUser.get(user);
+			if (userEntities == null) {
+				userEntities = new ArrayList<>();
+				byUser.put(user, userEntities);
+			}
+			userEntities.add(entities.get(item));
+		}
+		List<Beneficiary> beneficiaries = new ArrayList<>(byUser.size());
+		for (Entry<String, List<RequestBeneficiaryEntity>> e : byUser.entrySet()) {
+			beneficiaries.add(beneficiary(e.getKey(), e.getValue()));
+		}
 		RequestData requestData = new RequestData();
+		requestData.setBeneficiaries(beneficiaries);
+		try {
+			oracle.iam.vo.OperationResult operationResult = oimService.doOperation(requestData,
+																				   OIMService.Intent.REQUEST);
+			if (operationResult == null) {
+				throw new IllegalStateException("No operation result");
+			}
+			LOG.log(Level.INFO, "Request {0} for {1} users, {2} accounts: {3}", new Object[]{operationResult.getRequestId(),
+																							  byUser.size(), chunk.size(),
+																							  operationResult.getOperationStatus()});
+			for (I item : chunk) {
+				results.put(item, operationResult);
+			}
+		} catch (Exception ex) {
+			if (chunk.size() == 1) {
+				LOG.log(Level.SEVERE, "Request for {0} failed: {1}", new Object[]{chunk.get(0), ownStack(ex)});
+				failures.put(chunk.get(0), ex);
+				return;
+			}
+			LOG.log(Level.WARNING, "Request for {0} accounts failed, resubmitting one by one: {1}",
+					new Object[]{chunk.size(), ex});
+			for (I item : chunk) {
+				submitChunk(oimService, Collections.singletonList(item), users, entities, results, failures);
+			}
+		}
+	}
+
+	private static Beneficiary beneficiary(String userKey, List<RequestBeneficiaryEntity> entities) {
 		Beneficiary beneficiary = new Beneficiary();
 		beneficiary.setBeneficiaryKey(userKey);
 		beneficiary.setBeneficiaryType(Beneficiary.USER_BENEFICIARY);
+		beneficiary.setTargetEntities(entities);
+		return beneficiary;
+	}
 
+	private static RequestBeneficiaryEntity provisionEntity(ApplicationInstance applicationInstance,
+															Map<String, Serializable> fields) {
 		List<RequestBeneficiaryEntityAttribute> benEntityParams = new ArrayList<>();
 		RequestBeneficiaryEntity requestEntity = new RequestBeneficiaryEntity();
 		requestEntity.setRequestEntityType(OIMType.ApplicationInstance);
-		requestEntity.setEntitySubType(applicationInstanceName);
+		requestEntity.setEntitySubType(applicationInstance.getApplicationInstanceName());
 		requestEntity.setEntityKey(String.valueOf(applicationInstance.getApplicationInstanceKey()).replaceAll(",\\. ", ""));
 		requestEntity.setOperation(RequestConstants.MODEL_PROVISION_APPLICATION_INSTANCE_OPERATION);
 		for (Map.Entry<String, Serializable> field : fields.entrySet()) {
@@ -622,62 +1291,29 @@ public class ResourceUtility extends ServiceProvider {
 
 		}
 		requestEntity.setEntityData(benEntityParams);
-
-		List<RequestBeneficiaryEntity> entities = new ArrayList<>();
-		entities.add(requestEntity);
-
-		beneficiary.setTargetEntities(entities);
-
-		List<Beneficiary> beneficiaries = new ArrayList<>();
-		beneficiaries.add(beneficiary);
-		requestData.setBeneficiaries(beneficiaries);
-
-		oracle.iam.vo.OperationResult operationResult = oimService.doOperation(requestData,
-																 OIMService.Intent.REQUEST);
-		if (operationResult == null) {
-			return null;
-		}
-		String result = operationResult.getOperationStatus().name();
-		LOG.log(Level.INFO, "AppInstance {0} for userid {1} request {2}", new Object[]{applicationInstanceName, userKey, result});
-		return result;
-	}
-
-	public String initCreateResourceRequest(String userKey, String applicationInstanceName) throws tcAPIException, tcColumnNotFoundException,
-																								   tcFormNotFoundException, OIMServiceException {
-		return initCreateResourceRequest(userKey, applicationInstanceName, new HashMap<String, Serializable>(), false);
+		return requestEntity;
 	}
 
-	public String initRevokeResourceRequest(String userKey, String applicationInstanceName, String accountId, boolean eh) throws OIMServiceException {
-		OIMService oimService = eh
-								? oracle.iam.platform.Platform.getServiceForEventHandlers(OIMService.class,
-																						  null, null, null, null)
-								: Platform.getService(OIMService.class);
-		RequestData requestData = new RequestData();
-		Beneficiary beneficiary = new Beneficiary();
-		beneficiary.setBeneficiaryKey(userKey);
-		beneficiary.setBeneficiaryType(Beneficiary.USER_BENEFICIARY);
+	private static RequestBeneficiaryEntity revokeEntity(String applicationInstanceName, String accountId) {
 		RequestBeneficiaryEntity requestEntity = new RequestBeneficiaryEntity();
 		requestEntity.setRequestEntityType(OIMType.ApplicationInstance);
 		requestEntity.setEntitySubType(applicationInstanceName);
 		requestEntity.setEntityKey(accountId);
 		requestEntity.setOperation(RequestConstants.MODEL_REVOKE_ACCOUNT_OPERATION);
+		return requestEntity;
+	}
 
-		List<RequestBeneficiaryEntity> entities = new ArrayList<>();
-		entities.add(requestEntity);
-
-		beneficiary.setTargetEntities(entities);
-
-		List<Beneficiary> beneficiaries = new ArrayList<>();
-		beneficiaries.add(beneficiary);
-		requestData.setBeneficiaries(beneficiaries);
-
-		oracle.iam.vo.OperationResult operationResult = oimService.doOperation(requestData,
-																 OIMService.Intent.REQUEST);
+	private static OIMService oimService(boolean eh) {
+		return eh
+			   ? oracle.iam.platform.Platform.getServiceForEventHandlers(OIMService.class, null, null, null, null)
+			   : Platform.getService(OIMService.class);
+	}
 
-		if (operationResult == null) {
-			return null;
-		}
-		return operationResult.getOperationStatus().name();
+	private static ApplicationInstanceService appInstanceService(boolean eh) {
+		return eh
+			   ? oracle.iam.platform.Platform.getServiceForEventHandlers(ApplicationInstanceService.class, null, null,
+																		  null, null)
+			   : Platform.getService(ApplicationInstanceService.class);
 	}
 
 	@Override
@@ -695,6 +1331,7 @@ public class ResourceUtility extends ServiceProvider {
 		objectService.close();
 		formService.close();
 		formInstanceService.close();
+		provisioningService.close();
 	}
 
 }
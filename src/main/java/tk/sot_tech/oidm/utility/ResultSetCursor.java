@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import Thor.API.Exceptions.tcAPIException;
+import Thor.API.Exceptions.tcColumnNotFoundException;
+import Thor.API.tcResultSet;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Forward cursor over tcResultSet reading cells by column ordinal.
+ * Column names are resolved once per result set instead of once per cell.
+ */
+public final class ResultSetCursor {
+
+	private final tcResultSet rs;
+	private final String[] names;
+	private final HashMap<String, Integer> ordinals;
+	private final int rowCount;
+	private int row = -1;
+
+	public ResultSetCursor(tcResultSet rs) throws tcAPIException {
+		this.rs = rs;
+		this.rowCount = rs == null ? 0 : rs.getRowCount();
+		this.names = rs == null ? new String[0] : rs.getColumnNames();
+		this.ordinals = new HashMap<>(names.length * 2);
+		for (int i = 0; i < names.length; ++i) {
+			ordinals.put(names[i], i);
+		}
+	}
+
+	public boolean hasColumn(String name) {
+		return ordinals.containsKey(name);
+	}
+
+	/**
+	 * @return column ordinal
+	 *
+	 * @throws tcColumnNotFoundException if result set has no such column
+	 */
+	public int column(String name) throws tcColumnNotFoundException {
+		Integer ordinal = ordinals.get(name);
+		if (ordinal == null) {
+			throw new tcColumnNotFoundException("Column " + name + " not found");
+		}
+		return ordinal;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public boolean next() throws tcAPIException {
+		if (row + 1 >= rowCount) {
+			return false;
+		}
+		rs.goToRow(++row);
+		return true;
+	}
+
+	public String getString(int column) throws tcAPIException, tcColumnNotFoundException {
+		return rs.getStringValueFromColumn(column);
+	}
+
+	public long getLong(int column) throws tcAPIException, tcColumnNotFoundException {
+		return rs.getLongValueFromColumn(column);
+	}
+
+	public int getInt(int column) throws tcAPIException, tcColumnNotFoundException {
+		return rs.getIntValueFromColumn(column);
+	}
+
+	public Date getDate(int column) throws tcAPIException, tcColumnNotFoundException {
+		return rs.getDate(names[column]);
+	}
+
+}
@@ -45,7 +45,6 @@ import oracle.iam.platform.authz.exception.AccessDeniedException;
 import oracle.iam.platformservice.api.EntityPublicationService;
 import static tk.sot_tech.oidm.utility.Misc.nullToEmpty;
 import static tk.sot_tech.oidm.utility.Misc.ownStack;
-import static tk.sot_tech.oidm.utility.UserUtility.USR_LOGIN_IN_OIM;
 
 public class RoleUtility extends ServiceProvider<RoleManager> {
 	
@@ -56,7 +55,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 
 	public String getRoleName(String roleId) throws AccessDeniedException, NoSuchRoleException,
 													RoleLookupException {
-		return service.getDetails(roleId, Collections.singleton(RoleManagerConstants.ROLE_UNIQUE_NAME)).getUniqueName();
+		return getService().getDetails(roleId, Collections.singleton(RoleManagerConstants.ROLE_UNIQUE_NAME)).getUniqueName();
 	}
 	
 	public String getRoleId(String roleName) throws AccessDeniedException, 
@@ -64,13 +63,13 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 													SearchKeyNotUniqueException, 
 													NoSuchRoleException, 
 													RoleLookupException{
-		return service.getDetails(RoleManagerConstants.ROLE_UNIQUE_NAME, roleName, new HashSet<String>()).getEntityId();
+		return getService().getDetails(RoleManagerConstants.ROLE_UNIQUE_NAME, roleName, new HashSet<String>()).getEntityId();
 	}
 
 	public String getRoleField(String roleId, String fieldName) throws AccessDeniedException,
 																	   NoSuchRoleException,
 																	   RoleLookupException {
-		Object attribute = service.getDetails(roleId, Collections.singleton(fieldName)).getAttribute(fieldName);
+		Object attribute = getService().getDetails(roleId, Collections.singleton(fieldName)).getAttribute(fieldName);
 		return attribute == null? null : String.valueOf(attribute);
 	}
 
@@ -84,7 +83,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 		HashSet<String> hs = new HashSet<>();
 		Role details = null;
 		try {
-			details = service.getDetails(RoleManagerConstants.ROLE_UNIQUE_NAME, roleName, hs);
+			details = getService().getDetails(RoleManagerConstants.ROLE_UNIQUE_NAME, roleName, hs);
 		} catch (NoSuchRoleException | RoleLookupException | SearchKeyNotUniqueException | AccessDeniedException ignore) {
 		}
 		if (details == null) {
@@ -92,9 +91,9 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 			attrs.put(RoleManagerConstants.ROLE_NAME, roleName);
 			attrs.put(RoleManagerConstants.ROLE_DESCRIPTION, roleName);
 			details = new Role(attrs);
-			RoleManagerResult result = service.create(details);
+			RoleManagerResult result = getService().create(details);
 			if (Misc.OPERATION_SUCCESS_VALUE.equalsIgnoreCase(result.getStatus())) {
-				details = service.getDetails(RoleManagerConstants.ROLE_NAME, roleName, hs);
+				details = getService().getDetails(RoleManagerConstants.ROLE_NAME, roleName, hs);
 			}
 		}
 		return Long.decode(details.getEntityId());
@@ -109,7 +108,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 																			RoleLookupException {
 		String roleId = getRoleId(roleName);
 		if(Misc.isNullOrEmpty(roleId)) return null;
-		return service.revokeRoleGrant(roleId, Collections.singleton(userId)).getStatus();
+		return getService().revokeRoleGrant(roleId, Collections.singleton(userId)).getStatus();
 	}
 	
 	public String addUserToRole(String userId, String roleName) throws AccessDeniedException,
@@ -122,7 +121,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 		String roleId = getRoleId(roleName);
 		
 		if(Misc.isNullOrEmpty(roleId))	return null;
-		return service.grantRole(roleId, Collections.singleton(userId)).getStatus();
+		return getService().grantRole(roleId, Collections.singleton(userId)).getStatus();
 	}
 
 	public boolean isUserInRoleOrganizations(String userLogin, String roleId) throws
@@ -147,7 +146,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 					}
 				}
 				try (UserUtility uu = new UserUtility()) {
-					String userId = uu.getUserAttribute(userLogin, USR_LOGIN_IN_OIM);
+					String userId = String.valueOf(uu.getUserKey(userLogin));
 					for (String orgId : orgs) {
 						List<String> orgUsers = ou.getNewService().getOrganizationMemberIds(orgId);
 						if (orgUsers.contains(userId)) {
@@ -168,7 +167,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 															 NoSuchRoleException,
 															 RoleLookupException {
 		ArrayList<Long> result = new ArrayList<>();
-		Role details = service.getDetails(roleId, Collections.singleton(RoleManagerConstants.ACCESS_POLICIES));
+		Role details = getService().getDetails(roleId, Collections.singleton(RoleManagerConstants.ACCESS_POLICIES));
 		LOG.log(Level.FINE, "GOT ROLE DETAILS {0}", details);
 		List<String> accessPolicies = (List<String>) details.getAttribute(
 			RoleManagerConstants.ACCESS_POLICIES);
@@ -215,7 +214,7 @@ public class RoleUtility extends ServiceProvider<RoleManager> {
 
 	public boolean isCatalogValueTheSame(String roleId, String name, Object expValue) {
 		try {
-			Role details = service.getDetails(roleId, Collections.singleton(RoleManagerConstants.CATALOG_ATTRIBUTES));
+			Role details = getService().getDetails(roleId, Collections.singleton(RoleManagerConstants.CATALOG_ATTRIBUTES));
 			Catalog catalog = (Catalog) details.getAttribute(
 				RoleManagerConstants.CATALOG_ATTRIBUTES);
 			for (MetaData m : catalog.getMetadata()) {
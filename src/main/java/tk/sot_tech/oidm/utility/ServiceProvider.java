@@ -25,14 +25,21 @@
  */
 package tk.sot_tech.oidm.utility;
 
-import Thor.API.Base.tcUtilityOperationsIntf;
-
 public abstract class ServiceProvider<T> implements AutoCloseable {
 	
-	protected final T service = initService();
+	private final LazyService<T> service = new LazyService<T>(null) {
+		@Override
+		protected T create() {
+			return initService();
+		}
+	};
 	
 	public T getService(){
-		return service;
+		return service.get();
+	}
+	
+	public boolean isServiceAcquired(){
+		return service.isAcquired();
 	}
 	
 	protected T initService(){
@@ -43,9 +50,7 @@ public abstract class ServiceProvider<T> implements AutoCloseable {
 
 	@Override
 	public void close() {
-		if(service != null && service instanceof tcUtilityOperationsIntf){
-			((tcUtilityOperationsIntf)service).close();
-		}
+		service.close();
 	}	
 	
 }
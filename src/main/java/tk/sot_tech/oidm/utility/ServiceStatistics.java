@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Optional call statistics for services returned by Platform.
+ * When enabled, every service interface is wrapped in a proxy counting calls,
+ * errors and latency per method; counters are plain atomics, so the call path
+ * takes no locks. Each interface is published as an MXBean under
+ * tk.sot_tech.oidm.utility:type=ServiceStatistics,name="fully qualified name";
+ * call shutdown() when the application is undeployed.
+ */
+public final class ServiceStatistics {
+
+	public static final String JMX_DOMAIN = "tk.sot_tech.oidm.utility";
+	public static final int HISTOGRAM_BUCKETS = 32;
+
+	private static final Logger LOG = Logger.getLogger(ServiceStatistics.class.getName());
+	private static final ConcurrentHashMap<Class<?>, ServiceCounters> SERVICES = new ConcurrentHashMap<>();
+	private static volatile boolean enabled;
+
+	private ServiceStatistics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Switching drops handles cached by Platform so the next lookup is (un)wrapped.
+	 */
+	public static void setEnabled(boolean enabled) {
+		ServiceStatistics.enabled = enabled;
+		Platform.clearServiceCache();
+	}
+
+	public static List<MethodStatistics> snapshot() {
+		ArrayList<MethodStatistics> result = new ArrayList<>();
+		for (ServiceCounters sc : SERVICES.values()) {
+			for (MethodStatistics ms : sc.getMethods()) {
+				result.add(ms);
+			}
+		}
+		return result;
+	}
+
+	public static void reset() {
+		for (ServiceCounters sc : SERVICES.values()) {
+			sc.reset();
+		}
+	}
+
+	/**
+	 * Disables statistics, unregisters the MXBeans and drops all counters.
+	 */
+	public static void shutdown() {
+		enabled = false;
+		for (ServiceCounters sc : SERVICES.values()) {
+			sc.unregister();
+		}
+		SERVICES.clear();
+		Platform.clearServiceCache();
+	}
+
+	static <T> T instrument(Class<T> serviceClass, T service) {
+		if (service == null || !serviceClass.isInterface() || Proxy.isProxyClass(service.getClass())
+			&& Proxy.getInvocationHandler(service) instanceof Timing) {
+			return service;
+		}
+		return serviceClass.cast(Proxy.newProxyInstance(serviceClass.getClassLoader(), new Class<?>[]{serviceClass},
+														new Timing(getCounters(serviceClass), service)));
+	}
+
+	private static ServiceCounters getCounters(Class<?> serviceClass) {
+		ServiceCounters counters = SERVICES.get(serviceClass);
+		if (counters == null) {
+			counters = new ServiceCounters(serviceClass.getName());
+			ServiceCounters existing = SERVICES.putIfAbsent(serviceClass, counters);
+			if (existing != null) {
+				counters = existing;
+			} else {
+				counters.register();
+			}
+		}
+		return counters;
+	}
+
+	private static final class Counters {
+
+		private final AtomicLong calls = new AtomicLong(), errors = new AtomicLong(),
+			totalMicros = new AtomicLong(), maxMicros = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		private void record(long micros, boolean error) {
+			calls.incrementAndGet();
+			if (error) {
+				errors.incrementAndGet();
+			}
+			totalMicros.addAndGet(micros);
+			long max = maxMicros.get();
+			while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+				max = maxMicros.get();
+			}
+			histogram.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), HISTOGRAM_BUCKETS - 1));
+		}
+
+		private MethodStatistics snapshot(String service, String method) {
+			long[] h = new long[HISTOGRAM_BUCKETS];
+			for (int i = 0; i < h.length; ++i) {
+				h[i] = histogram.get(i);
+			}
+			return new MethodStatistics(service, method, calls.get(), errors.get(), totalMicros.get(), maxMicros.get(), h);
+		}
+
+		private void reset() {
+			calls.set(0);
+			errors.set(0);
+			totalMicros.set(0);
+			maxMicros.set(0);
+			for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+				histogram.set(i, 0);
+			}
+		}
+	}
+
+	private static final class ServiceCounters implements ServiceStatisticsMXBean {
+
+		private final String service;
+		private final ConcurrentHashMap<Method, Counters> methods = new ConcurrentHashMap<>();
+
+		private ServiceCounters(String service) {
+			this.service = service;
+		}
+
+		private ObjectName getObjectName() throws MalformedObjectNameException {
+			return new ObjectName(JMX_DOMAIN + ":type=ServiceStatistics,name=" + ObjectName.quote(service));
+		}
+
+		/**
+		 * Replaces a bean left by a previous deployment, which would otherwise
+		 * block registration and keep its classloader reachable.
+		 */
+		private void register() {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = getObjectName();
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				server.registerMBean(this, name);
+			} catch (Exception ex) {
+				LOG.log(Level.WARNING, "Unable to register statistics MBean for {0}: {1}", new Object[]{service, ex});
+			}
+		}
+
+		private void unregister() {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = getObjectName();
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+			} catch (Exception ex) {
+				LOG.log(Level.WARNING, "Unable to unregister statistics MBean for {0}: {1}", new Object[]{service, ex});
+			}
+		}
+
+		private Counters get(Method method) {
+			Counters counters = methods.get(method);
+			if (counters == null) {
+				counters = new Counters();
+				Counters existing = methods.putIfAbsent(method, counters);
+				if (existing != null) {
+					counters = existing;
+				}
+			}
+			return counters;
+		}
+
+		@Override
+		public String getService() {
+			return service;
+		}
+
+		@Override
+		public long getCalls() {
+			long count = 0;
+			for (Counters c : methods.values()) {
+				count += c.calls.get();
+			}
+			return count;
+		}
+
+		@Override
+		public long getErrors() {
+			long count = 0;
+			for (Counters c : methods.values()) {
+				count += c.errors.get();
+			}
+			return count;
+		}
+
+		@Override
+		public MethodStatistics[] getMethods() {
+			ArrayList<MethodStatistics> result = new ArrayList<>(methods.size());
+			for (Method m : methods.keySet()) {
+				result.add(methods.get(m).snapshot(service, signature(m)));
+			}
+			return result.toArray(new MethodStatistics[result.size()]);
+		}
+
+		@Override
+		public void reset() {
+			for (Counters c : methods.values()) {
+				c.reset();
+			}
+		}
+
+		private static String signature(Method m) {
+			StringBuilder sb = new StringBuilder(m.getName()).append('(');
+			Class<?>[] params = m.getParameterTypes();
+			for (int i = 0; i < params.length; ++i) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(params[i].getSimpleName());
+			}
+			return sb.append(')').toString();
+		}
+	}
+
+	private static final class Timing implements InvocationHandler {
+
+		private final ServiceCounters counters;
+		private final Object target;
+
+		private Timing(ServiceCounters counters, Object target) {
+			this.counters = counters;
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) {
+					return proxy == args[0];
+				}
+				return method.invoke(target, args);
+			}
+			Counters c = counters.get(method);
+			long start = System.nanoTime();
+			boolean error = true;
+			try {
+				Object result = method.invoke(target, args);
+				error = false;
+				return result;
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			} finally {
+				c.record((System.nanoTime() - start) / 1000, error);
+			}
+		}
+	}
+
+}
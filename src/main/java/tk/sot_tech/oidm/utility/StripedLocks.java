@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks selected by key hash: operations on one key are
+ * serialized, different keys mostly proceed in parallel. Counts contended
+ * acquisitions and time spent waiting.
+ */
+public final class StripedLocks {
+
+	private final ReentrantLock[] locks;
+	private final AtomicLong acquisitions = new AtomicLong(), contended = new AtomicLong(),
+		waitNanos = new AtomicLong(), maxWaitNanos = new AtomicLong();
+
+	/**
+	 * @param stripes number of locks, rounded up to a power of two
+	 */
+	public StripedLocks(int stripes) {
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		locks = new ReentrantLock[n];
+		for (int i = 0; i < locks.length; ++i) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Locks the stripe of the key, the caller must unlock the returned lock.
+	 */
+	public Lock acquire(long key) {
+		ReentrantLock lock = locks[stripe(key)];
+		acquisitions.incrementAndGet();
+		if (!lock.tryLock()) {
+			contended.incrementAndGet();
+			long start = System.nanoTime();
+			lock.lock();
+			long waited = System.nanoTime() - start;
+			waitNanos.addAndGet(waited);
+			long max = maxWaitNanos.get();
+			while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+				max = maxWaitNanos.get();
+			}
+		}
+		return lock;
+	}
+
+	public int getStripes() {
+		return locks.length;
+	}
+
+	public long getAcquisitionCount() {
+		return acquisitions.get();
+	}
+
+	/**
+	 * @return acquisitions that had to wait for another holder
+	 */
+	public long getContendedCount() {
+		return contended.get();
+	}
+
+	public long getWaitTime(TimeUnit unit) {
+		return unit.convert(waitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public long getMaxWaitTime(TimeUnit unit) {
+		return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return threads currently waiting on any stripe, an estimate
+	 */
+	public int getQueueLength() {
+		int waiting = 0;
+		for (ReentrantLock lock : locks) {
+			waiting += lock.getQueueLength();
+		}
+		return waiting;
+	}
+
+	public void resetStatistics() {
+		acquisitions.set(0);
+		contended.set(0);
+		waitNanos.set(0);
+		maxWaitNanos.set(0);
+	}
+
+	private int stripe(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & (locks.length - 1);
+	}
+
+	@Override
+	public String toString() {
+		return "StripedLocks{" + "stripes=" + locks.length + ", acquisitions=" + acquisitions + ", contended=" + contended
+			   + ", waitMillis=" + getWaitTime(TimeUnit.MILLISECONDS) + '}';
+	}
+
+}
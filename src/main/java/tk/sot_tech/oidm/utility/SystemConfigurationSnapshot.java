@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import oracle.iam.conf.vo.SystemProperty;
+import static tk.sot_tech.oidm.utility.Misc.ownStack;
+
+/**
+ * Immutable copy of a configured set of system properties, replaced as a whole
+ * on every refresh. A failed refresh keeps the previous copy.
+ */
+public class SystemConfigurationSnapshot implements AutoCloseable {
+
+	private static final Logger LOG = Logger.getLogger(SystemConfigurationSnapshot.class.getName());
+
+	private final List<String> names;
+	private volatile Map<String, String> values = Collections.emptyMap();
+	private volatile long lastRefresh;
+	private volatile Exception lastError;
+	private final AtomicLong refreshes = new AtomicLong(), failures = new AtomicLong();
+	private ScheduledExecutorService scheduler;
+
+	public SystemConfigurationSnapshot(Collection<String> names) {
+		this.names = new ArrayList<>(names);
+	}
+
+	public boolean contains(String name) {
+		return values.containsKey(name);
+	}
+
+	public String get(String name) {
+		return values.get(name);
+	}
+
+	public Map<String, String> getValues() {
+		return values;
+	}
+
+	/**
+	 * Reads all configured properties; properties missing in OIM are left out.
+	 *
+	 * @return true if the snapshot was replaced
+	 */
+	public boolean refresh() {
+		HashMap<String, String> loaded = new HashMap<>();
+		try (SystemConfigurationUtility scu = new SystemConfigurationUtility()) {
+			for (String name : names) {
+				SystemProperty property = scu.getService().getSystemProperty(name);
+				if (property != null) {
+					loaded.put(name, property.getPtyValue());
+				}
+			}
+			values = Collections.unmodifiableMap(loaded);
+			lastRefresh = System.currentTimeMillis();
+			lastError = null;
+			refreshes.incrementAndGet();
+			return true;
+		} catch (Exception ex) {
+			failures.incrementAndGet();
+			lastError = ex;
+			LOG.severe(ownStack(ex));
+			return false;
+		}
+	}
+
+	/**
+	 * Refreshes now and then every period in a background daemon thread.
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		refresh();
+		stop();
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SystemConfigurationSnapshot refresh");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		}, period, period, unit);
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	@Override
+	public void close() {
+		stop();
+	}
+
+	/**
+	 * @return time of the last successful refresh in milliseconds, 0 if never refreshed
+	 */
+	public long getLastRefreshTime() {
+		return lastRefresh;
+	}
+
+	/**
+	 * @return milliseconds since the last successful refresh, -1 if never refreshed
+	 */
+	public long getStaleness() {
+		long last = lastRefresh;
+		return last == 0 ? -1 : System.currentTimeMillis() - last;
+	}
+
+	public long getRefreshCount() {
+		return refreshes.get();
+	}
+
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	public Exception getLastError() {
+		return lastError;
+	}
+
+}
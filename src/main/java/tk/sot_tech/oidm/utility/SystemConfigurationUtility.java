@@ -31,8 +31,25 @@ import oracle.iam.conf.vo.SystemProperty;
 
 public class SystemConfigurationUtility extends ServiceProvider<SystemConfigurationService> {
 	
+	private static volatile SystemConfigurationSnapshot snapshot;
+	
+	/**
+	 * Serves reads of the snapshot properties from it, null to always read OIM.
+	 */
+	public static void setSnapshot(SystemConfigurationSnapshot snapshot){
+		SystemConfigurationUtility.snapshot = snapshot;
+	}
+	
+	public static SystemConfigurationSnapshot getSnapshot(){
+		return snapshot;
+	}
+	
 	public String getSystemProperty(String name) throws SystemConfigurationServiceException{
-		SystemProperty systemProperty = service.getSystemProperty(name);
+		SystemConfigurationSnapshot s = snapshot;
+		if(s != null && s.contains(name)){
+			return s.get(name);
+		}
+		SystemProperty systemProperty = getService().getSystemProperty(name);
 		return systemProperty.getPtyValue();
 	}
 
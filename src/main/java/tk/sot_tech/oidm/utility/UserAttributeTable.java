@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attribute values of many users, stored row by row in one array.
+ * Users are identified as they were requested (login or key as string).
+ */
+public final class UserAttributeTable {
+
+	private final String[] fields;
+	private final HashMap<String, Integer> fieldIndex = new HashMap<>();
+	private final LinkedHashMap<String, Integer> rows = new LinkedHashMap<>();
+	private Object[] values;
+
+	UserAttributeTable(List<String> fields, int expectedUsers) {
+		this.fields = fields.toArray(new String[fields.size()]);
+		for (int i = 0; i < this.fields.length; ++i) {
+			fieldIndex.put(this.fields[i], i);
+		}
+		values = new Object[Math.max(1, expectedUsers) * Math.max(1, this.fields.length)];
+	}
+
+	void addRow(String user, Object[] row) {
+		int index = rows.size();
+		if ((index + 1) * fields.length > values.length) {
+			values = Arrays.copyOf(values, Math.max(values.length * 2, (index + 1) * fields.length));
+		}
+		System.arraycopy(row, 0, values, index * fields.length, fields.length);
+		rows.put(user, index);
+	}
+
+	public List<String> getFields() {
+		return Collections.unmodifiableList(Arrays.asList(fields));
+	}
+
+	/**
+	 * @return found users in request order
+	 */
+	public Set<String> getUsers() {
+		return Collections.unmodifiableSet(rows.keySet());
+	}
+
+	public int size() {
+		return rows.size();
+	}
+
+	public boolean containsUser(String user) {
+		return rows.containsKey(user);
+	}
+
+	/**
+	 * @return attribute value, null if the user was not found or the field was not requested
+	 */
+	public Object get(String user, String field) {
+		Integer row = rows.get(user), column = fieldIndex.get(field);
+		return row == null || column == null ? null : values[row * fields.length + column];
+	}
+
+	public String getString(String user, String field) {
+		Object value = get(user, field);
+		return value == null ? null : String.valueOf(value);
+	}
+
+	/**
+	 * @return field to value of the user, null if the user was not found
+	 */
+	public Map<String, Object> getRow(String user) {
+		Integer row = rows.get(user);
+		if (row == null) {
+			return null;
+		}
+		LinkedHashMap<String, Object> res = new LinkedHashMap<>();
+		for (int i = 0; i < fields.length; ++i) {
+			res.put(fields[i], values[row * fields.length + i]);
+		}
+		return res;
+	}
+
+	@Override
+	public String toString() {
+		return "UserAttributeTable{" + "users=" + rows.size() + ", fields=" + Arrays.toString(fields) + '}';
+	}
+
+}
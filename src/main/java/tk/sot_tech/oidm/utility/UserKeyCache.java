@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bidirectional login/usr_key cache. Logins are matched case-insensitively,
+ * logins of missing users are remembered for a shorter negative ttl
+ * (0 disables negative caching).
+ * Both directions are LRU bounded.
+ */
+public final class UserKeyCache {
+
+	/**
+	 * Nothing cached for the login.
+	 */
+	public static final long UNKNOWN = -2;
+	/**
+	 * Login cached as not existing.
+	 */
+	public static final long NOT_FOUND = -1;
+
+	private final long ttlNanos, negativeTtlNanos;
+	private final Map<String, CachedKey> keys;
+	private final Map<Long, CachedKey> logins;
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+	public UserKeyCache(int maxEntries, long ttl, long negativeTtl, TimeUnit unit) {
+		this.ttlNanos = unit.toNanos(ttl);
+		this.negativeTtlNanos = unit.toNanos(negativeTtl);
+		this.keys = Collections.synchronizedMap(new LruMap<String, CachedKey>(maxEntries));
+		this.logins = Collections.synchronizedMap(new LruMap<Long, CachedKey>(maxEntries));
+	}
+
+	/**
+	 * @return usr_key, NOT_FOUND or UNKNOWN
+	 */
+	public long getKey(String login) {
+		String normalized = normalize(login);
+		CachedKey cached = keys.get(normalized);
+		if (cached == null || isExpired(cached)) {
+			if (cached != null) {
+				keys.remove(normalized);
+			}
+			misses.incrementAndGet();
+			return UNKNOWN;
+		}
+		hits.incrementAndGet();
+		return cached.key;
+	}
+
+	/**
+	 * @return login, null if not cached
+	 */
+	public String getLogin(long key) {
+		CachedKey cached = logins.get(key);
+		if (cached == null || isExpired(cached)) {
+			if (cached != null) {
+				logins.remove(key);
+			}
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return cached.login;
+	}
+
+	public void put(String login, long key) {
+		CachedKey cached = new CachedKey(login, key);
+		keys.put(normalize(login), cached);
+		logins.put(key, cached);
+	}
+
+	public void putNotFound(String login) {
+		if (negativeTtlNanos > 0) {
+			keys.put(normalize(login), new CachedKey(login, NOT_FOUND));
+		}
+	}
+
+	public void invalidate(String login) {
+		CachedKey cached = keys.remove(normalize(login));
+		if (cached != null && cached.key >= 0) {
+			logins.remove(cached.key);
+		}
+	}
+
+	public void invalidate(long key) {
+		CachedKey cached = logins.remove(key);
+		if (cached != null) {
+			keys.remove(normalize(cached.login));
+		}
+	}
+
+	public void invalidateAll() {
+		keys.clear();
+		logins.clear();
+	}
+
+	public int size() {
+		return keys.size();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private boolean isExpired(CachedKey cached) {
+		long ttl = cached.key == NOT_FOUND ? negativeTtlNanos : ttlNanos;
+		return ttl > 0 && System.nanoTime() - cached.loadedAt > ttl;
+	}
+
+	private static String normalize(String login) {
+		return login.toUpperCase(Locale.ROOT);
+	}
+
+	private static final class CachedKey {
+
+		private final String login;
+		private final long key;
+		private final long loadedAt = System.nanoTime();
+
+		private CachedKey(String login, long key) {
+			this.login = login;
+			this.key = key;
+		}
+	}
+
+}
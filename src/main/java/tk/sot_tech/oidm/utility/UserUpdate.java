@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016, eramde
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package tk.sot_tech.oidm.utility;
+
+import Thor.API.Exceptions.tcAPIException;
+import Thor.API.Exceptions.tcColumnNotFoundException;
+import Thor.API.Exceptions.tcStaleDataUpdateException;
+import Thor.API.Exceptions.tcUserNotFoundException;
+import Thor.API.tcResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static tk.sot_tech.oidm.utility.Misc.isNullOrEmpty;
+import static tk.sot_tech.oidm.utility.UserUtility.MULTI_ATTRIBUTE_SEPARATOR;
+import static tk.sot_tech.oidm.utility.UserUtility.USR_KEY_IN_OIM;
+import static tk.sot_tech.oidm.utility.UserUtility.USR_LOGIN_IN_OIM;
+
+/**
+ * Collects changes of one user's form fields and applies them with one read
+ * and at most one write. Multi-valued fields hold values separated by
+ * MULTI_ATTRIBUTE_SEPARATOR. Field names are "Users.*" column names.
+ */
+public final class UserUpdate {
+
+	public enum Status {
+		UPDATED, UNCHANGED, USER_NOT_FOUND
+	}
+
+	private enum Action {
+		SET, APPEND, REMOVE
+	}
+
+	private static final Logger LOG = Logger.getLogger(UserUpdate.class.getName());
+
+	private final UserUtility utility;
+	private final long userKey;
+	private final LinkedHashMap<String, List<Pair<Action, String>>> changes = new LinkedHashMap<>();
+	private int maxRetries = 3;
+
+	UserUpdate(UserUtility utility, long userKey) {
+		this.utility = utility;
+		this.userKey = userKey;
+	}
+
+	public long getUserKey() {
+		return userKey;
+	}
+
+	/**
+	 * Sets the value unless it already equals the current one ignoring case.
+	 */
+	public UserUpdate set(String field, String value) {
+		return add(field, Action.SET, value);
+	}
+
+	/**
+	 * Adds the value to a multi-valued field if not present.
+	 */
+	public UserUpdate append(String field, String value) {
+		return add(field, Action.APPEND, value);
+	}
+
+	/**
+	 * Removes the value from a multi-valued field if present.
+	 */
+	public UserUpdate remove(String field, String value) {
+		return add(field, Action.REMOVE, value);
+	}
+
+	/**
+	 * @param maxRetries number of re-reads after tcStaleDataUpdateException
+	 */
+	public UserUpdate setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+		return this;
+	}
+
+	/**
+	 * Reads the fields once, replays the changes in order and writes the
+	 * net result only if some field differs. Updates of the same user through
+	 * UserUtility are serialized; a modification made elsewhere restarts the
+	 * read up to max retries times.
+	 */
+	public Status apply() throws tcAPIException, tcColumnNotFoundException, tcUserNotFoundException,
+								 tcStaleDataUpdateException {
+		if (changes.isEmpty()) {
+			return Status.UNCHANGED;
+		}
+		Lock lock = UserUtility.getUserLocks().acquire(userKey);
+		try {
+			return apply(changes.keySet().toArray(new String[changes.size()]));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Status apply(String[] fields) throws tcAPIException, tcColumnNotFoundException, tcUserNotFoundException,
+												tcStaleDataUpdateException {
+		HashMap<String, Object> filter = new HashMap<>(1);
+		filter.put(USR_KEY_IN_OIM, userKey);
+		for (int attempt = 0;; ++attempt) {
+			tcResultSet rs = utility.getService().findUsersFiltered(filter, fields);
+			if (isNullOrEmpty(rs)) {
+				return Status.USER_NOT_FOUND;
+			}
+			rs.goToRow(0);
+			HashMap<String, Object> update = new HashMap<>();
+			for (Map.Entry<String, List<Pair<Action, String>>> e : changes.entrySet()) {
+				String old = rs.getStringValue(e.getKey()), value = old;
+				for (Pair<Action, String> change : e.getValue()) {
+					value = apply(value, change.key, change.value);
+				}
+				if (!normalize(value).equals(normalize(old))) {
+					update.put(e.getKey(), value);
+				}
+			}
+			if (update.isEmpty()) {
+				return Status.UNCHANGED;
+			}
+			try {
+				utility.getService().updateUser(rs, update);
+			} catch (tcStaleDataUpdateException ex) {
+				if (attempt >= maxRetries) {
+					throw ex;
+				}
+				LOG.log(Level.WARNING, "User {0} changed concurrently, retry {1}", new Object[]{userKey, attempt + 1});
+				continue;
+			}
+			if (update.containsKey(USR_LOGIN_IN_OIM)) {
+				UserUtility.invalidateUser(userKey);
+				UserUtility.invalidateUser(rs.getStringValue(USR_LOGIN_IN_OIM));
+				// the new login may be cached as not found
+				UserUtility.invalidateUser(String.valueOf(update.get(USR_LOGIN_IN_OIM)));
+			}
+			return Status.UPDATED;
+		}
+	}
+
+	private UserUpdate add(String field, Action action, String value) {
+		List<Pair<Action, String>> fieldChanges = changes.get(field);
+		if (fieldChanges == null) {
+			fieldChanges = new ArrayList<>();
+			changes.put(field, fieldChanges);
+		}
+		fieldChanges.add(new Pair<>(action, value));
+		return this;
+	}
+
+	private static String apply(String current, Action action, String value) {
+		switch (action) {
+			case SET:
+				return normalize(current).equalsIgnoreCase(normalize(value)) ? current : value;
+			case APPEND: {
+				if (isNullOrEmpty(current)) {
+					return value;
+				}
+				List<String> values = split(current);
+				if (values.contains(value)) {
+					return current;
+				}
+				return current.charAt(current.length() - 1) == MULTI_ATTRIBUTE_SEPARATOR
+					   ? current + value
+					   : current + MULTI_ATTRIBUTE_SEPARATOR + value;
+			}
+			default: {
+				if (isNullOrEmpty(current)) {
+					return current;
+				}
+				List<String> values = split(current);
+				if (!values.removeAll(Collections.singleton(value))) {
+					return current;
+				}
+				StringBuilder sb = new StringBuilder();
+				for (String v : values) {
+					if (!v.isEmpty()) {
+						if (sb.length() > 0) {
+							sb.append(MULTI_ATTRIBUTE_SEPARATOR);
+						}
+						sb.append(v);
+					}
+				}
+				return sb.toString();
+			}
+		}
+	}
+
+	private static List<String> split(String value) {
+		return new ArrayList<>(Arrays.asList(value.split(String.valueOf(MULTI_ATTRIBUTE_SEPARATOR))));
+	}
+
+	private static String normalize(String value) {
+		return value == null ? "" : value;
+	}
+
+}
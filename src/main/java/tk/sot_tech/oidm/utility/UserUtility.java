@@ -31,19 +31,31 @@ import Thor.API.Exceptions.tcStaleDataUpdateException;
 import Thor.API.Exceptions.tcUserNotFoundException;
 import Thor.API.Operations.tcUserOperationsIntf;
 import Thor.API.tcResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import oracle.iam.identity.exception.NoSuchUserException;
 import oracle.iam.identity.exception.UserDisableException;
+import oracle.iam.identity.exception.UserSearchException;
 import oracle.iam.identity.exception.ValidationFailedException;
 import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.identity.usermgmt.api.UserManagerConstants;
 import oracle.iam.identity.usermgmt.vo.User;
 import oracle.iam.passwordmgmt.api.PasswordMgmtService;
 import oracle.iam.passwordmgmt.utils.Utils;
 import oracle.iam.passwordmgmt.vo.OimPasswordPolicy;
 import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
 import oracle.iam.platform.authz.exception.AccessDeniedException;
+import oracle.iam.platform.entitymgr.vo.SearchCriteria;
 import oracle.iam.selfservice.self.selfmgmt.api.AuthenticatedSelfService;
 import oracle.idm.common.ipf.api.password.RandomPasswordGenerator;
 import oracle.idm.common.ipf.api.password.RandomPasswordGeneratorImpl;
@@ -52,7 +64,7 @@ import static tk.sot_tech.oidm.utility.Misc.isNullOrEmpty;
 
 public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 
-	private final UserManager newService = Platform.getService(UserManager.class);
+	private final LazyService<UserManager> newService = new LazyService<>(UserManager.class);
 	private static final Logger LOG = Logger.getLogger(UserUtility.class.getName());
 	public static final String USR_KEY_IN_OIM = "Users.Key",
 			USR_LOGIN_IN_OIM = "Users.User ID",
@@ -61,13 +73,59 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 			USR_STATUS_IN_OIM = "Users.Status";
 	public static final char MULTI_ATTRIBUTE_SEPARATOR = ';';
 
+	private static final StripedLocks USER_LOCKS = new StripedLocks(64);
+
+	private static volatile UserKeyCache userKeys;
+
+	/**
+	 * Caches login/usr_key pairs, disabled by default. With a positive
+	 * negativeTtl an unknown login stays unknown for that long, even if the
+	 * user is created meanwhile; pass 0 to cache found users only.
+	 */
+	public static void enableUserKeyCache(int maxUsers, long ttl, long negativeTtl, TimeUnit unit) {
+		userKeys = new UserKeyCache(maxUsers, ttl, negativeTtl, unit);
+	}
+
+	public static void disableUserKeyCache() {
+		userKeys = null;
+	}
+
+	/**
+	 * Form field changes of one user made through this class are serialized
+	 * within the JVM; the locks expose contention statistics.
+	 */
+	public static StripedLocks getUserLocks() {
+		return USER_LOCKS;
+	}
+
+	/**
+	 * @return current cache for hit/miss statistics, null if disabled
+	 */
+	public static UserKeyCache getUserKeyCache() {
+		return userKeys;
+	}
+
+	public static void invalidateUser(String login) {
+		UserKeyCache c = userKeys;
+		if (c != null) {
+			c.invalidate(login);
+		}
+	}
+
+	public static void invalidateUser(long userKey) {
+		UserKeyCache c = userKeys;
+		if (c != null) {
+			c.invalidate(userKey);
+		}
+	}
+
 	/**
 	 * Получение новой платформы пользователей (UserManager)
 	 *
 	 * @return
 	 */
 	public UserManager getNewService() {
-		return newService;
+		return newService.get();
 	}
 
 	/**
@@ -82,9 +140,12 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 	 * @throws tcColumnNotFoundException
 	 */
 	public String getUserAttribute(long userKey, String fieldName) throws tcAPIException, tcColumnNotFoundException {
+		if (USR_LOGIN_IN_OIM.equals(fieldName)) {
+			return getUserLogin(userKey);
+		}
 		HashMap<String, Object> hashMap = new HashMap<>(1);
 		hashMap.put(USR_KEY_IN_OIM, userKey);
-		tcResultSet rs = service.findUsersFiltered(hashMap, new String[]{fieldName});
+		tcResultSet rs = getService().findUsersFiltered(hashMap, new String[]{fieldName});
 		if (isNullOrEmpty(rs)) {
 			return null;
 		}
@@ -109,9 +170,13 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 	 * @throws tcColumnNotFoundException
 	 */
 	public String getUserAttribute(String userLogin, String fieldName) throws tcAPIException, tcColumnNotFoundException {
+		if (USR_KEY_IN_OIM.equals(fieldName)) {
+			long key = getUserKey(userLogin);
+			return key < 0 ? null : String.valueOf(key);
+		}
 		HashMap<String, Object> hashMap = new HashMap<>(1);
 		hashMap.put(USR_LOGIN_IN_OIM, userLogin);
-		tcResultSet rs = service.findUsersFiltered(hashMap, new String[]{fieldName});
+		tcResultSet rs = getService().findUsersFiltered(hashMap, new String[]{fieldName});
 		if (isNullOrEmpty(rs)) {
 			return null;
 		}
@@ -119,6 +184,55 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 		return rs.getStringValue(fieldName);
 	}
 
+	/**
+	 * @return usr_key of the login, -1 if there is no such user
+	 */
+	public long getUserKey(String userLogin) throws tcAPIException, tcColumnNotFoundException {
+		UserKeyCache c = userKeys;
+		long key = c == null ? UserKeyCache.UNKNOWN : c.getKey(userLogin);
+		if (key != UserKeyCache.UNKNOWN) {
+			return key;
+		}
+		HashMap<String, Object> hashMap = new HashMap<>(1);
+		hashMap.put(USR_LOGIN_IN_OIM, userLogin);
+		tcResultSet rs = getService().findUsersFiltered(hashMap, new String[]{USR_KEY_IN_OIM, USR_LOGIN_IN_OIM});
+		if (isNullOrEmpty(rs)) {
+			if (c != null) {
+				c.putNotFound(userLogin);
+			}
+			return UserKeyCache.NOT_FOUND;
+		}
+		rs.goToRow(0);
+		key = rs.getLongValue(USR_KEY_IN_OIM);
+		if (c != null) {
+			c.put(rs.getStringValue(USR_LOGIN_IN_OIM), key);
+		}
+		return key;
+	}
+
+	/**
+	 * @return login of the user, null if there is no such user
+	 */
+	public String getUserLogin(long userKey) throws tcAPIException, tcColumnNotFoundException {
+		UserKeyCache c = userKeys;
+		String login = c == null ? null : c.getLogin(userKey);
+		if (login != null) {
+			return login;
+		}
+		HashMap<String, Object> hashMap = new HashMap<>(1);
+		hashMap.put(USR_KEY_IN_OIM, userKey);
+		tcResultSet rs = getService().findUsersFiltered(hashMap, new String[]{USR_LOGIN_IN_OIM});
+		if (isNullOrEmpty(rs)) {
+			return null;
+		}
+		rs.goToRow(0);
+		login = rs.getStringValue(USR_LOGIN_IN_OIM);
+		if (c != null) {
+			c.put(login, userKey);
+		}
+		return login;
+	}
+
 	/**
 	 * Установка атрибута на форму пользователя.
 	 * ИСПОЛЬЗУЕТСЯ НОВАЯ ПЛАТФОРМА, необходимо правильно указывать названия поля.
@@ -132,86 +246,48 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 	 * @throws Thor.API.Exceptions.tcColumnNotFoundException
 	 */
 	public String setUserFormField(long userId, String fieldName, String fieldValue) throws tcColumnNotFoundException {
-		HashMap<String, Object> hashMap = new HashMap<>(1);
-		hashMap.put(USR_KEY_IN_OIM, userId);
 		try {
-			tcResultSet rs = service.findUsersFiltered(hashMap, new String[]{fieldName});
-			if (isNullOrEmpty(rs)) {
-				return null;
-			}
-			rs.goToRow(0);
-			String oldValue = rs.getStringValue(fieldName);
-			if (oldValue == null) {
-				oldValue = "";
-			}
-			hashMap.clear();
-			if (!oldValue.equalsIgnoreCase(fieldValue)) {
-				hashMap.put(fieldName, fieldValue);
-				service.updateUser(rs, hashMap);
-			}
+			return toOperationResult(edit(userId).set(fieldName, fieldValue).apply());
 		}
 		catch (tcAPIException | tcUserNotFoundException | tcStaleDataUpdateException ex) {
 			LOG.severe(Misc.ownStack(ex));
 			return ex.toString();
 		}
-		return OPERATION_SUCCESS_VALUE;
 	}
 
 	public String appendUserFormField(long userId, String fieldName, String fieldValue) {
-
-		HashMap<String, Object> hashMap = new HashMap<>(1);
-		hashMap.put(USR_KEY_IN_OIM, userId);
 		try {
-			tcResultSet rs = service.findUsersFiltered(hashMap, new String[]{fieldName});
-			if (isNullOrEmpty(rs)) {
-				return null;
-			}
-			rs.goToRow(0);
-			String field = rs.getStringValue(fieldName);
-			hashMap.clear();
-
-			if (isNullOrEmpty(field)) {
-				hashMap.put(fieldName, fieldValue);
-			}
-			else if (!field.contains(fieldValue)) {
-				hashMap.put(fieldName, fieldValue + MULTI_ATTRIBUTE_SEPARATOR);
-			}
-			service.updateUser(rs, hashMap);
+			return toOperationResult(edit(userId).append(fieldName, fieldValue).apply());
 		}
 		catch (tcAPIException | tcColumnNotFoundException | tcUserNotFoundException | tcStaleDataUpdateException ex) {
 			LOG.severe(Misc.ownStack(ex));
 			return ex.toString();
 		}
-		return OPERATION_SUCCESS_VALUE;
 	}
 
 	public String removeUserFormField(long userId, String fieldName, String fieldValue) {
-
-		HashMap<String, Object> hashMap = new HashMap<>(1);
-		hashMap.put(USR_KEY_IN_OIM, userId);
 		try {
-			tcResultSet rs = service.findUsersFiltered(hashMap, new String[]{fieldName});
-			if (isNullOrEmpty(rs)) {
-				return null;
-			}
-			rs.goToRow(0);
-			String field = rs.getStringValue(fieldName);
-			hashMap.clear();
-
-			if (!isNullOrEmpty(field)) {
-				field = field.replace(fieldValue, "").replace(";;", ";");
-				if (("" + MULTI_ATTRIBUTE_SEPARATOR).equalsIgnoreCase(field)) {
-					field = "";
-				}
-				hashMap.put(fieldName, field);
-				service.updateUser(rs, hashMap);
-			}
+			return toOperationResult(edit(userId).remove(fieldName, fieldValue).apply());
 		}
 		catch (tcAPIException | tcColumnNotFoundException | tcUserNotFoundException | tcStaleDataUpdateException ex) {
 			LOG.severe(Misc.ownStack(ex));
 			return ex.toString();
 		}
-		return OPERATION_SUCCESS_VALUE;
+	}
+
+	/**
+	 * Starts a set of field changes of one user, applied with one read and one write.
+	 *
+	 * @param userId ключ пользователя
+	 *
+	 * @return update builder, nothing is changed until apply()
+	 */
+	public UserUpdate edit(long userId) {
+		return new UserUpdate(this, userId);
+	}
+
+	private static String toOperationResult(UserUpdate.Status status) {
+		return status == UserUpdate.Status.USER_NOT_FOUND ? null : OPERATION_SUCCESS_VALUE;
 	}
 
 	public User getCurrentUserInfo(Set<String> attributes) {
@@ -228,7 +304,7 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 
 	public String lockUser(long uid) {
 		try {
-			return newService.disable(String.valueOf(uid), false).getStatus();
+			return getNewService().disable(String.valueOf(uid), false).getStatus();
 		}
 		catch (ValidationFailedException | AccessDeniedException |
 			   UserDisableException | NoSuchUserException ex) {
@@ -237,6 +313,109 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 		}
 	}
 
+	/**
+	 * Reads attributes of many users with one UserManager.search per chunk
+	 * of keys instead of one findUsersFiltered per user and field.
+	 *
+	 * @param fields    UserManager attribute names (e.g. "Email", not "Users.Email")
+	 * @param chunkSize keys per search, keep below the database IN list limit of 1000
+	 *
+	 * @return table by user key as decimal string; users not found are absent
+	 */
+	public UserAttributeTable getUserAttributesByKey(Collection<Long> userKeys, Collection<String> fields, int chunkSize)
+		throws UserSearchException, AccessDeniedException {
+		LinkedHashMap<String, Object> ids = new LinkedHashMap<>();
+		for (Long key : userKeys) {
+			ids.put(String.valueOf(key), key);
+		}
+		return getUserAttributes(UserManagerConstants.AttributeName.USER_KEY.getId(), ids, fields, chunkSize);
+	}
+
+	/**
+	 * Same as getUserAttributesByKey by logins, matched case-insensitively.
+	 * Logins differing only in case are searched once and each gets a row.
+	 *
+	 * @return table by login as requested; users not found are absent
+	 */
+	public UserAttributeTable getUserAttributesByLogin(Collection<String> logins, Collection<String> fields,
+													   int chunkSize) throws UserSearchException,
+																			 AccessDeniedException {
+		LinkedHashMap<String, Object> ids = new LinkedHashMap<>();
+		for (String login : logins) {
+			ids.put(login, login);
+		}
+		return getUserAttributes(UserManagerConstants.AttributeName.USER_LOGIN.getId(), ids, fields, chunkSize);
+	}
+
+	private UserAttributeTable getUserAttributes(String idAttribute, LinkedHashMap<String, Object> ids,
+												 Collection<String> fields, int chunkSize) throws
+		UserSearchException, AccessDeniedException {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		boolean byLogin = UserManagerConstants.AttributeName.USER_LOGIN.getId().equals(idAttribute);
+		HashMap<String, List<String>> requested = new HashMap<>(ids.size() * 2);
+		ArrayList<Object> searched = new ArrayList<>(ids.size());
+		for (Entry<String, Object> e : ids.entrySet()) {
+			String normalized = byLogin ? e.getKey().toUpperCase(Locale.ROOT) : e.getKey();
+			List<String> spellings = requested.get(normalized);
+			if (spellings == null) {
+				spellings = new ArrayList<>(1);
+				requested.put(normalized, spellings);
+				searched.add(e.getValue());
+			}
+			spellings.add(e.getKey());
+		}
+		List<String> fieldList = new ArrayList<>(fields);
+		HashSet<String> attributes = new HashSet<>(fieldList);
+		attributes.add(idAttribute);
+		HashMap<String, Object[]> found = new HashMap<>(ids.size() * 2);
+		ArrayList<Object> chunk = new ArrayList<>(chunkSize);
+		for (Object id : searched) {
+			chunk.add(id);
+			if (chunk.size() == chunkSize) {
+				searchUsers(idAttribute, byLogin, chunk, attributes, fieldList, requested, found);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			searchUsers(idAttribute, byLogin, chunk, attributes, fieldList, requested, found);
+		}
+		UserAttributeTable table = new UserAttributeTable(fieldList, found.size());
+		for (String id : ids.keySet()) {
+			Object[] row = found.get(id);
+			if (row != null) {
+				table.addRow(id, row);
+			}
+		}
+		return table;
+	}
+
+	private void searchUsers(String idAttribute, boolean byLogin, List<Object> chunk, Set<String> attributes,
+							 List<String> fields, Map<String, List<String>> requested, Map<String, Object[]> found) throws
+		UserSearchException, AccessDeniedException {
+		List<User> users = getNewService().search(new SearchCriteria(idAttribute, new ArrayList<>(chunk),
+																	 SearchCriteria.Operator.IN),
+												  attributes, new HashMap<String, Object>());
+		if (users == null) {
+			return;
+		}
+		for (User user : users) {
+			String id = byLogin ? user.getLogin() : user.getEntityId();
+			List<String> requestedIds = id == null ? null : requested.get(byLogin ? id.toUpperCase(Locale.ROOT) : id);
+			if (requestedIds == null) {
+				continue;
+			}
+			Object[] row = new Object[fields.size()];
+			for (int i = 0; i < row.length; ++i) {
+				row[i] = user.getAttribute(fields.get(i));
+			}
+			for (String requestedId : requestedIds) {
+				found.put(requestedId, row);
+			}
+		}
+	}
+
 	public char[] generatePasswordForUser(String login) {
 		PasswordMgmtService pwdService = Platform.getService(PasswordMgmtService.class);
 		PasswordPolicyInfo passwordPolicyInfo = pwdService.getApplicablePasswordPolicy(login, true);
@@ -263,4 +442,10 @@ public class UserUtility extends ServiceProvider<tcUserOperationsIntf> {
 		return tcUserOperationsIntf.class;
 	}
 
+	@Override
+	public void close() {
+		super.close();
+		newService.close();
+	}
+
 }